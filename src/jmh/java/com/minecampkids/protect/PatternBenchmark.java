@@ -0,0 +1,49 @@
+package com.minecampkids.protect;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * Pattern parsing, which runs for every pattern on load, sync and command, and property matching on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatternBenchmark {
+
+    private static final int SAMPLE = 1024;
+
+    private String[] patterns;
+    private StatePredicate property;
+    private IBlockState[] states;
+    private int next;
+
+    @Setup
+    public void setup() {
+        StandInBlocks population = StandInBlocks.create(SAMPLE);
+        List<String> sample = population.samplePatterns(SAMPLE, 42);
+        patterns = sample.toArray(new String[0]);
+        property = (StatePredicate) ProtectionConfig.getPredicate("*:*[lit=true,level=2]");
+        states = population.sampleStates(SAMPLE, 1337);
+    }
+
+    @Benchmark
+    public BlockPredicate parse() {
+        return ProtectionConfig.getPredicate(patterns[next++ & (SAMPLE - 1)]);
+    }
+
+    @Benchmark
+    public boolean stateTest() {
+        return property.test(states[next++ & (SAMPLE - 1)]);
+    }
+}
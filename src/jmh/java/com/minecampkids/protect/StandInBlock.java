@@ -0,0 +1,71 @@
+package com.minecampkids.protect;
+
+import java.lang.reflect.Field;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.block.state.BlockStateContainer;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.registries.IForgeRegistryEntry;
+
+/**
+ * A block that is never registered. It carries its own name and numeric ID, and numbers its states the same way
+ * {@link Block#getStateId(IBlockState)} does, including the collisions past 16 states.
+ */
+class StandInBlock extends Block {
+
+    private static final Field REGISTRY_NAME;
+    static {
+        try {
+            REGISTRY_NAME = IForgeRegistryEntry.Impl.class.getDeclaredField("registryName");
+            REGISTRY_NAME.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // createBlockState() is called from the Block constructor, before any of our fields are set
+    private static IProperty<?>[] pendingProperties;
+
+    private final int id;
+    private final Reference2IntMap<IBlockState> metas = new Reference2IntOpenHashMap<>();
+
+    StandInBlock(int id, ResourceLocation name, IProperty<?>... properties) {
+        super(withProperties(properties));
+        this.id = id;
+        try {
+            // setRegistryName asks the Loader for the active mod, which does not exist here
+            REGISTRY_NAME.set(this, name);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        int meta = 0;
+        for (IBlockState state : getBlockState().getValidStates()) {
+            metas.put(state, meta++ & 15);
+        }
+    }
+
+    private static Material withProperties(IProperty<?>[] properties) {
+        pendingProperties = properties;
+        return Material.ROCK;
+    }
+
+    @Override
+    protected BlockStateContainer createBlockState() {
+        return new BlockStateContainer(this, pendingProperties);
+    }
+
+    @Override
+    public int getMetaFromState(IBlockState state) {
+        return metas.getInt(state);
+    }
+
+    static int getStateId(IBlockState state) {
+        StandInBlock block = (StandInBlock) state.getBlock();
+        return block.id + (block.getMetaFromState(state) << 12);
+    }
+}
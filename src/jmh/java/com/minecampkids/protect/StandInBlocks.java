@@ -0,0 +1,107 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.block.properties.PropertyBool;
+import net.minecraft.block.properties.PropertyInteger;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * A synthetic block population shaped roughly like a modpack: a handful of domains, mostly simple blocks, some with a
+ * few properties and some with more states than meta can tell apart.
+ */
+final class StandInBlocks {
+
+    static {
+        // Block's constructor touches SoundType, which needs the vanilla registries
+        Bootstrap.register();
+    }
+
+    static final ToIntFunction<IBlockState> STATE_IDS = StandInBlock::getStateId;
+
+    private static final IProperty<?> LIT = PropertyBool.create("lit");
+    private static final IProperty<?> POWERED = PropertyBool.create("powered");
+    private static final IProperty<?> LEVEL = PropertyInteger.create("level", 0, 3);
+    private static final IProperty<?> AGE = PropertyInteger.create("age", 0, 7);
+
+    private static final IProperty<?>[][] SHAPES = {
+            {}, {}, {}, {},
+            { LIT },
+            { LEVEL },
+            { LIT, LEVEL },
+            { AGE, POWERED, LIT }, // 32 states, so meta collides
+    };
+
+    private final int domains;
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<IBlockState> states = new ArrayList<>();
+
+    private StandInBlocks(int count, int domains) {
+        this.domains = domains;
+        for (int i = 0; i < count; i++) {
+            Block block = new StandInBlock(i + 1, getName(i), SHAPES[i % SHAPES.length]);
+            blocks.add(block);
+            states.addAll(block.getBlockState().getValidStates());
+        }
+    }
+
+    static StandInBlocks create(int count) {
+        return new StandInBlocks(count, Math.max(1, count / 100));
+    }
+
+    private ResourceLocation getName(int block) {
+        return new ResourceLocation("mod" + (block % domains), "block_" + block);
+    }
+
+    List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * States to test, in a random but repeatable order.
+     */
+    IBlockState[] sampleStates(int count, long seed) {
+        Random rand = new Random(seed);
+        IBlockState[] ret = new IBlockState[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = states.get(rand.nextInt(states.size()));
+        }
+        return ret;
+    }
+
+    /**
+     * Whitelist patterns over this population: half block-only, a fifth wildcards, a tenth partial wildcards and the
+     * rest with properties.
+     */
+    List<String> samplePatterns(int count, long seed) {
+        Random rand = new Random(seed);
+        List<String> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int block = rand.nextInt(blocks.size());
+            ResourceLocation name = getName(block);
+            int kind = rand.nextInt(10);
+            if (kind < 5) {
+                ret.add(name.toString());
+            } else if (kind < 7) {
+                // Mostly *:path, an entire domain only occasionally
+                ret.add(rand.nextInt(4) == 0 ? name.getResourceDomain() + ":*" : "*:" + name.getResourcePath());
+            } else if (kind < 8) {
+                // Every block_1* in the domain, ten to a hundred blocks
+                ret.add(name.getResourceDomain() + ":" + name.getResourcePath().substring(0, 7) + "*");
+            } else {
+                // Pin a property if the block has one, otherwise a property it lacks, which is ignored
+                IProperty<?>[] props = SHAPES[block % SHAPES.length];
+                ret.add(props.length == 0 ? name + "[lit=true]" : name + "[" + props[0].getName() + "=" + props[0].getAllowedValues().iterator().next() + "]");
+            }
+        }
+        return ret;
+    }
+}
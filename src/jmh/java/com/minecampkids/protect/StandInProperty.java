@@ -0,0 +1,38 @@
+package com.minecampkids.protect;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSortedSet;
+
+import net.minecraft.block.properties.PropertyHelper;
+
+/**
+ * A property with whatever values were seen for it, by name. Patterns only ever compare value names, so this matches
+ * the same as the real property would.
+ */
+class StandInProperty extends PropertyHelper<String> {
+
+    private final ImmutableSortedSet<String> values;
+
+    StandInProperty(String name, Set<String> values) {
+        super(name, String.class);
+        this.values = ImmutableSortedSet.copyOf(values);
+    }
+
+    @Override
+    public Collection<String> getAllowedValues() {
+        return values;
+    }
+
+    @Override
+    public Optional<String> parseValue(String value) {
+        return values.contains(value) ? Optional.of(value) : Optional.absent();
+    }
+
+    @Override
+    public String getName(String value) {
+        return value;
+    }
+}
@@ -0,0 +1,63 @@
+package com.minecampkids.protect;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Encoding and decoding the full whitelist message, which is what a client costs the server on join or resync.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SyncCodecBenchmark {
+
+    @Param({ "1", "10", "100", "1000" })
+    public int patterns;
+
+    private MessageInitialWhitelist message;
+    private ByteBuf out;
+    private ByteBuf encoded;
+
+    @Setup
+    public void setup() {
+        List<String> whitelist = StandInBlocks.create(2000).samplePatterns(patterns, 42);
+        message = new MessageInitialWhitelist(1, 0, true, whitelist, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        out = Unpooled.buffer();
+        encoded = Unpooled.buffer();
+        message.toBytes(encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        encoded.release();
+    }
+
+    @Benchmark
+    public ByteBuf encode() {
+        out.clear();
+        message.toBytes(out);
+        return out;
+    }
+
+    @Benchmark
+    public MessageInitialWhitelist decode() {
+        MessageInitialWhitelist ret = new MessageInitialWhitelist();
+        ret.fromBytes(encoded.readerIndex(0));
+        return ret;
+    }
+}
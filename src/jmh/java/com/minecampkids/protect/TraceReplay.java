@@ -0,0 +1,247 @@
+package com.minecampkids.protect;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.block.Block;
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Replays a trace written by {@link TraceRecorder} against a config file, without a game. Blocks are rebuilt as
+ * stand-ins from the states in the trace, then every check is repeated and compared with the recorded decision.
+ * <p>
+ * Usage: {@code TraceReplay <trace> <config> [passes]}, or {@code gradlew replayTrace -Ptrace=... -PreplayConfig=...}
+ */
+public final class TraceReplay {
+
+    private static final int MAX_REPORTED_DIFFERENCES = 20;
+
+    private final List<String> stateNames = new ArrayList<>();
+    private final List<UUID> players = new ArrayList<>();
+
+    private final ByteArrayList events = new ByteArrayList();
+    private final IntArrayList states = new IntArrayList();
+    private final IntArrayList checkPlayers = new IntArrayList();
+    private final ByteArrayList flags = new ByteArrayList();
+    private final IntArrayList dimensions = new IntArrayList();
+    private final LongArrayList positions = new LongArrayList();
+    private final LongArrayList nanos = new LongArrayList();
+
+    private IBlockState[] resolvedStates;
+    private List<Block> blocks;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraceReplay <trace> <config> [passes]");
+            System.exit(1);
+        }
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Bootstrap.register();
+        TraceReplay replay = new TraceReplay();
+        replay.read(new File(args[0]));
+        replay.buildBlocks();
+        CompiledWhitelist.setDefaultBlocks(replay.blocks, StandInBlock::getStateId);
+
+        // The config writes back to its file when loaded, so work on a copy
+        File config = File.createTempFile("mckidsprotect-replay", ".cfg");
+        config.deleteOnExit();
+        Files.copy(new File(args[1]).toPath(), config.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        replay.replay(new ProtectionConfig(config), passes);
+    }
+
+    private void read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != TraceRecorder.MAGIC) {
+                throw new IOException(file + " is not a trace");
+            }
+            int format = in.readUnsignedByte();
+            if (format != TraceRecorder.FORMAT) {
+                throw new IOException("Unsupported trace format " + format);
+            }
+            while (true) {
+                int tag;
+                try {
+                    tag = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                switch (tag) {
+                case TraceRecorder.STATE:
+                    checkId(TraceRecorder.readVarInt(in), stateNames.size());
+                    stateNames.add(in.readUTF());
+                    break;
+                case TraceRecorder.PLAYER:
+                    checkId(TraceRecorder.readVarInt(in), players.size());
+                    players.add(new UUID(in.readLong(), in.readLong()));
+                    break;
+                case TraceRecorder.CHECK:
+                    events.add(in.readByte());
+                    states.add(TraceRecorder.readVarInt(in));
+                    checkPlayers.add(TraceRecorder.readVarInt(in));
+                    flags.add(in.readByte());
+                    int dimension = TraceRecorder.readVarInt(in);
+                    dimensions.add((dimension >>> 1) ^ -(dimension & 1));
+                    positions.add(in.readLong());
+                    nanos.add(TraceRecorder.readVarLong(in));
+                    break;
+                default:
+                    throw new IOException("Unknown record " + tag + " after " + events.size() + " checks");
+                }
+            }
+        } catch (EOFException e) {
+            // A trace cut short by a crash, replay what is there
+            System.err.println("Trace ends mid-record, replaying the first " + events.size() + " checks");
+        }
+        int count = Math.min(Math.min(Math.min(events.size(), states.size()), Math.min(checkPlayers.size(), flags.size())),
+                Math.min(Math.min(dimensions.size(), positions.size()), nanos.size()));
+        events.size(count);
+        states.size(count);
+        checkPlayers.size(count);
+        flags.size(count);
+        dimensions.size(count);
+        positions.size(count);
+        nanos.size(count);
+    }
+
+    private static void checkId(int id, int expected) throws IOException {
+        if (id != expected) {
+            throw new IOException("Expected definition " + expected + ", found " + id);
+        }
+    }
+
+    /**
+     * Builds one stand-in block per block name in the trace, with every property value the trace mentions.
+     */
+    private void buildBlocks() {
+        Map<String, Map<String, TreeSet<String>>> seen = new TreeMap<>();
+        List<Map<String, String>> parsed = new ArrayList<>();
+        for (String s : stateNames) {
+            int bracket = s.indexOf('[');
+            String name = bracket < 0 ? s : s.substring(0, bracket);
+            Map<String, String> props = new TreeMap<>();
+            if (bracket >= 0) {
+                for (String prop : s.substring(bracket + 1, s.length() - 1).split(",")) {
+                    String[] keyval = prop.split("=", 2);
+                    props.put(keyval[0], keyval[1]);
+                }
+            }
+            parsed.add(props);
+            Map<String, TreeSet<String>> blockProps = seen.computeIfAbsent(name, k -> new TreeMap<>());
+            props.forEach((k, v) -> blockProps.computeIfAbsent(k, x -> new TreeSet<>()).add(v));
+        }
+
+        Map<String, StandInBlock> byName = new HashMap<>();
+        blocks = new ArrayList<>();
+        for (Map.Entry<String, Map<String, TreeSet<String>>> e : seen.entrySet()) {
+            IProperty<?>[] props = e.getValue().entrySet().stream()
+                    .map(p -> new StandInProperty(p.getKey(), p.getValue()))
+                    .toArray(IProperty<?>[]::new);
+            StandInBlock block = new StandInBlock(blocks.size() + 1, new ResourceLocation(e.getKey()), props);
+            byName.put(e.getKey(), block);
+            blocks.add(block);
+        }
+
+        resolvedStates = new IBlockState[stateNames.size()];
+        for (int i = 0; i < resolvedStates.length; i++) {
+            String s = stateNames.get(i);
+            int bracket = s.indexOf('[');
+            StandInBlock block = byName.get(bracket < 0 ? s : s.substring(0, bracket));
+            IBlockState state = block.getDefaultState();
+            for (Map.Entry<String, String> prop : parsed.get(i).entrySet()) {
+                state = withValue(state, prop.getKey(), prop.getValue());
+            }
+            resolvedStates[i] = state;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IBlockState withValue(IBlockState state, String name, String value) {
+        for (IProperty<?> prop : state.getPropertyKeys()) {
+            if (prop.getName().equals(name)) {
+                return state.withProperty((IProperty<String>) prop, value);
+            }
+        }
+        throw new IllegalStateException("No property " + name + " on " + state.getBlock().getRegistryName());
+    }
+
+    private void replay(ProtectionConfig config, int passes) {
+        int count = events.size();
+        ProtectionStats.Event[] eventTypes = ProtectionStats.Event.values();
+        long recorded = 0;
+        for (int i = 0; i < count; i++) {
+            recorded += nanos.getLong(i);
+        }
+        System.out.printf("%d checks, %d distinct states, %d players%n", count, stateNames.size(), players.size());
+        if (count == 0) {
+            return;
+        }
+        System.out.printf("Recorded: %.1f ns/check%n", (double) recorded / count);
+
+        BlockPos[] pos = new BlockPos[count];
+        for (int i = 0; i < count; i++) {
+            pos[i] = BlockPos.fromLong(positions.getLong(i));
+        }
+        boolean[] decisions = new boolean[count];
+        for (int pass = 0; pass < passes; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                decisions[i] = check(config, i, pos[i]);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Pass %d: %.1f ns/check, %.0f checks/s%n", pass + 1, (double) elapsed / count, count * 1e9 / elapsed);
+        }
+
+        int[] differences = new int[eventTypes.length];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            boolean expected = (flags.getByte(i) & TraceRecorder.FLAG_ALLOWED) != 0;
+            if (decisions[i] != expected) {
+                if (total++ < MAX_REPORTED_DIFFERENCES) {
+                    System.out.printf("  #%d %s %s at %s in dim %d by %s: recorded %s, replayed %s%n", i, eventTypes[events.getByte(i)],
+                            stateNames.get(states.getInt(i)), pos[i], dimensions.getInt(i),
+                            players.get(checkPlayers.getInt(i)), expected ? "allow" : "deny", decisions[i] ? "allow" : "deny");
+                }
+                differences[events.getByte(i)]++;
+            }
+        }
+        if (total == 0) {
+            System.out.println("No differences");
+            return;
+        }
+        System.out.println(total + " differences:");
+        for (ProtectionStats.Event event : eventTypes) {
+            if (differences[event.ordinal()] > 0) {
+                System.out.println("  " + event + ": " + differences[event.ordinal()]);
+            }
+        }
+    }
+
+    private boolean check(ProtectionConfig config, int i, BlockPos pos) {
+        int flag = flags.getByte(i);
+        if (config.bypasses((flag & TraceRecorder.FLAG_CREATIVE) != 0, (flag & TraceRecorder.FLAG_FAKE) != 0)) {
+            return true;
+        }
+        return config.getSnapshot().test(players.get(checkPlayers.getInt(i)), dimensions.getInt(i), pos, resolvedStates[states.getInt(i)]);
+    }
+}
@@ -0,0 +1,83 @@
+package com.minecampkids.protect;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * The per-event cost of a whitelist check, as the compiled table, the rule index it falls back to, and the linear scan
+ * both replaced. Each invocation tests the next state from a fixed random sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WhitelistBenchmark {
+
+    private static final int SAMPLE = 4096;
+
+    @Param({ "1", "10", "100", "1000" })
+    public int patterns;
+
+    @Param({ "2000" })
+    public int blocks;
+
+    private StandInBlocks population;
+    private List<BlockPredicate> rules;
+    private CompiledWhitelist compiled;
+    private RuleIndex index;
+    private IBlockState[] states;
+    private int next;
+
+    @Setup
+    public void setup() {
+        population = StandInBlocks.create(blocks);
+        rules = population.samplePatterns(patterns, 42).stream()
+                .map(ProtectionConfig::getPredicate)
+                .collect(Collectors.toList());
+        compiled = CompiledWhitelist.compile(rules, population.getBlocks(), StandInBlocks.STATE_IDS);
+        index = new RuleIndex(rules, population.getBlocks());
+        states = population.sampleStates(SAMPLE, 1337);
+    }
+
+    private IBlockState nextState() {
+        return states[next++ & (SAMPLE - 1)];
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.test(nextState());
+    }
+
+    @Benchmark
+    public boolean ruleIndex() {
+        return index.test(nextState());
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        IBlockState state = nextState();
+        for (BlockPredicate rule : rules) {
+            if (rule.test(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CompiledWhitelist compile() {
+        return CompiledWhitelist.compile(rules, population.getBlocks(), StandInBlocks.STATE_IDS);
+    }
+}
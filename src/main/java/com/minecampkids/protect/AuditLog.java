@@ -0,0 +1,239 @@
+package com.minecampkids.protect;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Remembers denied actions in a fixed size ring buffer, which the server thread writes to without locking or waiting.
+ * When it fills up faster than it is drained, the oldest entries are overwritten. A background thread copies entries to
+ * rotated log files in the config folder, collapsing repeats of the same denial into one line.
+ */
+class AuditLog {
+
+    private static final Logger log = LogManager.getLogger(MCKidsProtect.MODID);
+
+    static final int CAPACITY = 1 << 12;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final long MAX_FILE_SIZE = 1 << 20;
+    private static final int MAX_FILES = 5;
+
+    private static final long DRAIN_INTERVAL_MS = 1000;
+
+    static final class Entry {
+
+        private final long sequence;
+        private final long time;
+        private final ProtectionStats.Event event;
+        private final UUID player;
+        private final String playerName;
+        private final int dimension;
+        private final BlockPos pos;
+        private final IBlockState state;
+
+        Entry(long sequence, long time, ProtectionStats.Event event, UUID player, String playerName, int dimension, BlockPos pos, IBlockState state) {
+            this.sequence = sequence;
+            this.time = time;
+            this.event = event;
+            this.player = player;
+            this.playerName = playerName;
+            this.dimension = dimension;
+            this.pos = pos;
+            this.state = state;
+        }
+
+        UUID getPlayer() {
+            return player;
+        }
+
+        boolean isRepeatOf(@Nullable Entry other) {
+            return other != null && event == other.event && state == other.state && dimension == other.dimension
+                    && pos.equals(other.pos) && player.equals(other.player);
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time)) + " " + playerName + " " + event + " " + state
+                    + " at " + pos.getX() + "," + pos.getY() + "," + pos.getZ() + " in dim " + dimension;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+    // Sequence number of the next entry to be written
+    private final AtomicLong head = new AtomicLong();
+
+    // Drainer thread only
+    private long drained;
+    private long lost;
+
+    @Nullable
+    private Thread drainer;
+    private volatile boolean running;
+
+    /**
+     * Call for every denied action. Actions on the client are ignored.
+     */
+    void record(ProtectionStats.Event event, EntityPlayer player, BlockPos pos, IBlockState state) {
+        if (player.world.isRemote) {
+            return;
+        }
+        record(event, player.getUniqueID(), player.getName(), player.world.provider.getDimension(), pos, state);
+    }
+
+    void record(ProtectionStats.Event event, UUID player, String playerName, int dimension, BlockPos pos, IBlockState state) {
+        long sequence = head.getAndIncrement();
+        entries.set((int) (sequence & MASK), new Entry(sequence, System.currentTimeMillis(), event, player, playerName, dimension, pos.toImmutable(), state));
+    }
+
+    /**
+     * @return Up to {@code count} of the most recent entries still in memory for the player, newest first.
+     */
+    List<Entry> getRecent(UUID player, int count) {
+        List<Entry> ret = new ArrayList<>();
+        long end = head.get();
+        for (long sequence = end - 1; sequence >= Math.max(0, end - CAPACITY) && ret.size() < count; sequence--) {
+            Entry entry = entries.get((int) (sequence & MASK));
+            if (entry != null && entry.sequence == sequence && entry.player.equals(player)) {
+                ret.add(entry);
+            }
+        }
+        return ret;
+    }
+
+    synchronized void start(File dir) {
+        if (drainer != null) {
+            return;
+        }
+        File file = new File(dir, MCKidsProtect.MODID + "-audit.log");
+        drained = head.get(); // Entries from before this start were already written, or belong to another world
+        running = true;
+        drainer = new Thread(() -> run(file), "MCKidsProtect Audit Writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Stops the writer after it has written everything recorded so far.
+     */
+    synchronized void stop() {
+        if (drainer == null) {
+            return;
+        }
+        running = false;
+        // Not interrupt(), which would close the log file under a write in progress
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainer = null;
+    }
+
+    private void run(File file) {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(DRAIN_INTERVAL_MS));
+            tryDrain(file);
+        }
+        tryDrain(file); // Whatever was recorded before stop()
+    }
+
+    private void tryDrain(File file) {
+        try {
+            drain(file);
+        } catch (IOException e) {
+            log.warn("Could not write audit log {}", file, e);
+        }
+    }
+
+    /**
+     * Writes out every entry recorded since the last drain. {@link #drained} and {@link #lost} only move once the lines
+     * are written, so a failed write is retried next time.
+     */
+    void drain(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        Entry last = null;
+        int repeats = 0;
+        long end = head.get();
+        long next = drained;
+        long lost = this.lost;
+        if (end - next > CAPACITY) {
+            lost += end - next - CAPACITY;
+            next = end - CAPACITY;
+        }
+        for (; next < end; next++) {
+            Entry entry = entries.get((int) (next & MASK));
+            if (entry == null || entry.sequence < next) {
+                break; // Claimed but not written yet, pick it up next time
+            } else if (entry.sequence > next) {
+                lost++; // Overwritten since we read head
+                continue;
+            }
+            if (entry.isRepeatOf(last)) {
+                repeats++;
+                continue;
+            }
+            if (last != null) {
+                lines.add(last + (repeats > 0 ? " (x" + (repeats + 1) + ")" : ""));
+            }
+            last = entry;
+            repeats = 0;
+        }
+        if (last != null) {
+            lines.add(last + (repeats > 0 ? " (x" + (repeats + 1) + ")" : ""));
+        }
+        if (lost > 0) {
+            lines.add(lost + " entries were lost because the audit log could not keep up");
+        }
+        if (lines.isEmpty()) {
+            drained = next;
+            return;
+        }
+        if (file.length() > MAX_FILE_SIZE) {
+            rotate(file);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        drained = next;
+        this.lost = 0;
+    }
+
+    /**
+     * Shifts audit.log to audit.log.1, audit.log.1 to audit.log.2 and so on, deleting the oldest.
+     */
+    private static void rotate(File file) throws IOException {
+        for (int i = MAX_FILES - 1; i > 0; i--) {
+            File from = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+            if (from.exists()) {
+                Files.move(from.toPath(), new File(file.getPath() + "." + i).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.minecampkids.protect;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.ResourceLocation;
+
+class BlockPredicate implements Predicate<IBlockState> {
+    
+    static final String WILDCARD = "*";
+
+    private final String domain, path;
+    
+    // Only set for partial wildcards such as *_planks. Checks never reach these, RuleIndex resolves them to block names once.
+    @Nullable
+    private final Pattern domainGlob, pathGlob;
+    
+    public BlockPredicate(String domain, String path) {
+        Preconditions.checkNotNull(path);
+        this.domain = MoreObjects.firstNonNull(domain, "minecraft");
+        this.path = path;
+        this.domainGlob = compileGlob(this.domain);
+        this.pathGlob = compileGlob(this.path);
+    }
+    
+    @Nullable
+    private static Pattern compileGlob(String part) {
+        if (part.equals(WILDCARD) || part.indexOf('*') < 0) {
+            return null;
+        }
+        return Pattern.compile(Arrays.stream(part.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")));
+    }
+    
+    String getDomain() {
+        return domain;
+    }
+    
+    String getPath() {
+        return path;
+    }
+    
+    /**
+     * @return True if the domain or path is a partial wildcard, rather than a name or {@code *}.
+     */
+    boolean isGlob() {
+        return domainGlob != null || pathGlob != null;
+    }
+    
+    @Override
+    public boolean test(IBlockState t) {
+        return testName(t.getBlock().getRegistryName()) && testProperties(t);
+    }
+    
+    boolean testName(ResourceLocation name) {
+        return matches(domain, domainGlob, name.getResourceDomain()) && matches(path, pathGlob, name.getResourcePath());
+    }
+    
+    private static boolean matches(String part, @Nullable Pattern glob, String value) {
+        if (glob != null) {
+            return glob.matcher(value).matches();
+        }
+        return part.equals(WILDCARD) || part.equals(value);
+    }
+    
+    /**
+     * Tests the parts of this predicate beyond the block name, which the caller has already matched.
+     */
+    boolean testProperties(IBlockState t) {
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(domain, path);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        BlockPredicate other = (BlockPredicate) obj;
+        return Objects.equals(domain, other.domain) && Objects.equals(path, other.path);
+    }
+    
+    @Override
+    public String toString() {
+        return domain + ":" + path;
+    }
+}
@@ -0,0 +1,73 @@
+package com.minecampkids.protect;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A named list of patterns, used in the whitelist or a group as {@code #tag:name}. Tags may contain ore dictionary
+ * patterns but not other tags.
+ */
+final class BlockTag {
+
+    private final String name;
+    private final ImmutableSet<BlockPredicate> rules;
+
+    BlockTag(String name, Collection<? extends BlockPredicate> rules) {
+        for (BlockPredicate rule : rules) {
+            if (rule instanceof TagPredicate && !((TagPredicate) rule).isOre()) {
+                throw new IllegalArgumentException("Tags cannot contain other tags: " + rule);
+            }
+        }
+        this.name = name;
+        this.rules = ImmutableSet.copyOf(rules);
+    }
+
+    /**
+     * Parses the format written by {@link #toString()}: {@code name;pattern pattern}
+     */
+    static BlockTag parse(String s) {
+        String[] parts = s.split(";", -1);
+        if (parts.length != 2 || !parts[0].matches("\\w+")) {
+            throw new IllegalArgumentException("Invalid tag string: " + s);
+        }
+        try {
+            return new BlockTag(parts[0], Arrays.stream(parts[1].split(" ")).filter(p -> !p.isEmpty()).map(ProtectionConfig::getPredicate).collect(Collectors.toList()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid tag string: " + s, e);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ImmutableSet<BlockPredicate> getRules() {
+        return rules;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, rules);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        BlockTag other = (BlockTag) obj;
+        return name.equals(other.name) && rules.equals(other.rules);
+    }
+
+    @Override
+    public String toString() {
+        return name + ";" + rules.stream().map(Object::toString).sorted().collect(Collectors.joining(" "));
+    }
+}
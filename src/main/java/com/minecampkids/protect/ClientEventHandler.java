@@ -1,9 +1,14 @@
 package com.minecampkids.protect;
 
-import net.minecraft.block.Block;
+import javax.annotation.Nullable;
+
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemBlock;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.RayTraceResult.Type;
 import net.minecraftforge.client.event.DrawBlockHighlightEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
@@ -14,30 +19,77 @@ public class ClientEventHandler {
     
     private final ProtectionConfig config;
     
+    // The highlight is drawn every frame, so the held items and the decision for the targeted block are
+    // only re-evaluated when they, or the whitelist, change
+    @Nullable
+    private Item mainItem, offItem;
+    private int mainMeta, offMeta;
+    private long heldVersion = -1;
+    private boolean heldWhitelisted;
+    
+    private int targetDimension;
+    @Nullable
+    private BlockPos targetPos;
+    @Nullable
+    private IBlockState targetState;
+    private long targetVersion = -1;
+    private boolean targetWhitelisted;
+    
     public ClientEventHandler(ProtectionConfig config) {
         this.config = config;
     }
 
-    @SuppressWarnings("deprecation")
     @SubscribeEvent
     public void onDrawBlockHighlight(DrawBlockHighlightEvent event) {
-        ItemStack main = event.getPlayer().getHeldItemMainhand();
-        ItemStack off = event.getPlayer().getHeldItemOffhand();
-        
-        // FIXME
-        IBlockState mainstate = Block.getBlockFromItem(main.getItem()).getStateFromMeta(main.getMetadata());
-        IBlockState offstate = Block.getBlockFromItem(off.getItem()).getStateFromMeta(off.getMetadata());
-        
-        if (config.isWhitelisted(event.getPlayer(), mainstate) || config.isWhitelisted(event.getPlayer(), offstate)) {
+        if (event.getTarget().typeOfHit != Type.BLOCK || config.bypasses(event.getPlayer())) {
             return;
         }
-
-        if (event.getTarget().typeOfHit == Type.BLOCK 
-                && !config.isWhitelisted(event.getPlayer(), Minecraft.getMinecraft().world.getBlockState(event.getTarget().getBlockPos()))) {
+        WhitelistSnapshot snapshot = config.getSnapshot();
+        int dimension = event.getPlayer().world.provider.getDimension();
+        BlockPos pos = event.getTarget().getBlockPos();
+        // Regions decide regardless of what could be placed
+        if (snapshot.getRegion(dimension, pos) == null && isHeldWhitelisted(event.getPlayer(), snapshot)) {
+            return;
+        }
+        
+        IBlockState state = Minecraft.getMinecraft().world.getBlockState(pos);
+        if (targetVersion != snapshot.getVersion() || targetState != state || targetDimension != dimension || !pos.equals(targetPos)) {
+            targetDimension = dimension;
+            targetPos = pos;
+            targetState = state;
+            targetVersion = snapshot.getVersion();
+            targetWhitelisted = snapshot.test(event.getPlayer().getUniqueID(), dimension, pos, state);
+        }
+        if (!targetWhitelisted) {
             event.setCanceled(true);
         }
     }
     
+    private boolean isHeldWhitelisted(EntityPlayer player, WhitelistSnapshot snapshot) {
+        ItemStack main = player.getHeldItemMainhand();
+        ItemStack off = player.getHeldItemOffhand();
+        if (heldVersion != snapshot.getVersion() 
+                || main.getItem() != mainItem || main.getMetadata() != mainMeta 
+                || off.getItem() != offItem || off.getMetadata() != offMeta) {
+            mainItem = main.getItem();
+            mainMeta = main.getMetadata();
+            offItem = off.getItem();
+            offMeta = off.getMetadata();
+            heldVersion = snapshot.getVersion();
+            heldWhitelisted = isPlaceable(player, main, snapshot) || isPlaceable(player, off, snapshot);
+        }
+        return heldWhitelisted;
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static boolean isPlaceable(EntityPlayer player, ItemStack stack, WhitelistSnapshot snapshot) {
+        if (!(stack.getItem() instanceof ItemBlock)) {
+            return false; // Only blocks can be placed, other items do not make the target interesting
+        }
+        ItemBlock item = (ItemBlock) stack.getItem();
+        return snapshot.test(player.getUniqueID(), item.getBlock().getStateFromMeta(item.getMetadata(stack.getMetadata())));
+    }
+    
     @SubscribeEvent
     public void onClientConnectToServer(ClientConnectedToServerEvent event) {
         if (!event.isLocal()) {
@@ -47,6 +99,7 @@ public class ClientEventHandler {
     
     @SubscribeEvent
     public void onClientDisconnectFromServer(ClientDisconnectionFromServerEvent event) {
+        MCKidsProtect.instance.getSync().reset();
         config.restore();
     }
 }
@@ -0,0 +1,94 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * The whitelist flattened into a table indexed by {@link Block#getStateId(IBlockState)}. State IDs only encode meta, so
+ * IDs whose states disagree (patterns on non-meta properties) and unknown blocks fall back to testing the rules.
+ */
+class CompiledWhitelist {
+
+    // Only replaced by offline tools, which have no registry
+    private static volatile Iterable<Block> defaultBlocks = Block.REGISTRY;
+    private static volatile ToIntFunction<IBlockState> defaultStateIds = Block::getStateId;
+
+    private final RuleIndex rules;
+    private final Iterable<Block> blocks;
+    private final ToIntFunction<IBlockState> stateIds;
+
+    private final BitSet known = new BitSet();
+    private final BitSet allowed = new BitSet();
+
+    private CompiledWhitelist(Collection<? extends BlockPredicate> rules, Iterable<Block> blocks, ToIntFunction<IBlockState> stateIds) {
+        this.rules = new RuleIndex(rules, blocks);
+        this.blocks = blocks;
+        this.stateIds = stateIds;
+    }
+
+    static CompiledWhitelist compile(Collection<? extends BlockPredicate> rules) {
+        return compile(rules, defaultBlocks, defaultStateIds);
+    }
+
+    /**
+     * Replaces the registry for every whitelist compiled from now on, for tools that run outside the game.
+     */
+    static void setDefaultBlocks(Iterable<Block> blocks, ToIntFunction<IBlockState> stateIds) {
+        defaultBlocks = blocks;
+        defaultStateIds = stateIds;
+    }
+
+    /**
+     * Compiles against an explicit set of blocks and state IDs, so the table can be built without a populated registry.
+     */
+    static CompiledWhitelist compile(Collection<? extends BlockPredicate> rules, Iterable<Block> blocks, ToIntFunction<IBlockState> stateIds) {
+        CompiledWhitelist ret = new CompiledWhitelist(rules, blocks, stateIds);
+        BitSet ambiguous = new BitSet();
+        for (Block block : blocks) {
+            for (IBlockState state : block.getBlockState().getValidStates()) {
+                int id = stateIds.applyAsInt(state);
+                if (id < 0) {
+                    continue;
+                }
+                boolean match = ret.rules.test(state);
+                if (!ret.known.get(id)) {
+                    ret.known.set(id);
+                    ret.allowed.set(id, match);
+                } else if (ret.allowed.get(id) != match) {
+                    ambiguous.set(id);
+                }
+            }
+        }
+        ret.known.andNot(ambiguous);
+        return ret;
+    }
+
+    public boolean test(IBlockState state) {
+        int id = stateIds.applyAsInt(state);
+        if (id >= 0 && known.get(id)) {
+            return allowed.get(id);
+        }
+        return rules.test(state);
+    }
+
+    /**
+     * @return Every state of the compiled blocks that this allows, in registry order.
+     */
+    List<IBlockState> getAllowedStates() {
+        List<IBlockState> ret = new ArrayList<>();
+        for (Block block : blocks) {
+            for (IBlockState state : block.getBlockState().getValidStates()) {
+                if (test(state)) {
+                    ret.add(state);
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,98 @@
+package com.minecampkids.protect;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches the config file for edits made outside the game and has {@link ProtectionConfig} parse and compile them on
+ * the watcher thread. The server thread swaps the result in with {@link ProtectionConfig#applyReload()}.
+ */
+class ConfigWatcher {
+
+    private static final Logger log = LogManager.getLogger(MCKidsProtect.MODID);
+
+    // Editors often write a file in several steps, wait for them to finish
+    private static final long SETTLE_MS = 500;
+
+    private final ProtectionConfig config;
+    private final Path file;
+
+    @Nullable
+    private WatchService service;
+
+    ConfigWatcher(ProtectionConfig config) {
+        this.config = config;
+        this.file = config.getConfigFile().toPath().toAbsolutePath();
+    }
+
+    synchronized void start() {
+        if (service != null) {
+            return;
+        }
+        try {
+            service = file.getFileSystem().newWatchService();
+            file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.warn("Could not watch {} for changes", file, e);
+            stop();
+            return;
+        }
+        WatchService service = this.service;
+        Thread thread = new Thread(() -> run(service), "MCKidsProtect Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (service != null) {
+            try {
+                service.close(); // Ends the watcher thread
+            } catch (IOException e) {
+                log.warn("Could not stop watching {}", file, e);
+            }
+            service = null;
+        }
+    }
+
+    private void run(WatchService service) {
+        try {
+            while (true) {
+                if (!isFileChanged(service.take())) {
+                    continue;
+                }
+                Thread.sleep(SETTLE_MS);
+                for (WatchKey key; (key = service.poll()) != null;) {
+                    isFileChanged(key);
+                }
+                try {
+                    config.reloadFromDisk();
+                } catch (RuntimeException e) {
+                    log.warn("Not reloading {}, keeping the current whitelist", file, e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private boolean isFileChanged(WatchKey key) {
+        boolean ret = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())) {
+                ret = true;
+            }
+        }
+        key.reset();
+        return ret;
+    }
+}
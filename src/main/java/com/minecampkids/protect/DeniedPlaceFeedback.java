@@ -0,0 +1,67 @@
+package com.minecampkids.protect;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.play.server.SPacketSetSlot;
+import net.minecraft.util.EnumHand;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.util.text.TextFormatting;
+
+/**
+ * Corrects the client after a denied placement, which has already used up the item on its side. Only the slots that
+ * held the item are resent, once per tick no matter how many placements were denied, and the player is told why at
+ * most once a second. Server thread only.
+ */
+class DeniedPlaceFeedback {
+
+    // Inventory index of the offhand slot, after 36 main and 4 armor slots
+    private static final int OFFHAND_SLOT = 40;
+
+    // Window ID that addresses the player inventory directly, regardless of the open container
+    private static final int PLAYER_INVENTORY = -2;
+
+    private final Map<EntityPlayerMP, IntSet> pending = new WeakHashMap<>();
+
+    private final Cache<EntityPlayerMP, Boolean> notified = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(1, TimeUnit.SECONDS)
+            .build();
+
+    void deny(EntityPlayerMP player, EnumHand hand) {
+        int slot = hand == EnumHand.OFF_HAND ? OFFHAND_SLOT : player.inventory.currentItem;
+        pending.computeIfAbsent(player, p -> new IntArraySet(2)).add(slot);
+        if (notified.getIfPresent(player) == null) {
+            notified.put(player, Boolean.TRUE);
+            player.sendStatusMessage(new TextComponentString(TextFormatting.RED + "You can't place that here"), true);
+        }
+    }
+
+    /**
+     * Called at the end of every server tick.
+     */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<EntityPlayerMP, IntSet> e : pending.entrySet()) {
+            EntityPlayerMP player = e.getKey();
+            if (player.hasDisconnected()) {
+                continue;
+            }
+            for (IntIterator iter = e.getValue().iterator(); iter.hasNext();) {
+                int slot = iter.nextInt();
+                player.connection.sendPacket(new SPacketSetSlot(PLAYER_INVENTORY, slot, player.inventory.getStackInSlot(slot)));
+            }
+        }
+        pending.clear();
+    }
+}
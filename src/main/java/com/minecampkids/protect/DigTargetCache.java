@@ -0,0 +1,53 @@
+package com.minecampkids.protect;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Remembers the last decision for the block each player is digging, as {@code BreakSpeed} fires every tick while mining
+ * the same block. Client and server player objects are distinct keys, so this is safe to share in singleplayer.
+ */
+class DigTargetCache {
+    
+    private static final class Target {
+        
+        private final int dimension;
+        private final BlockPos pos;
+        private final IBlockState state;
+        private final long version;
+        private final boolean whitelisted;
+        
+        Target(int dimension, BlockPos pos, IBlockState state, long version, boolean whitelisted) {
+            this.dimension = dimension;
+            this.pos = pos;
+            this.state = state;
+            this.version = version;
+            this.whitelisted = whitelisted;
+        }
+        
+        boolean matches(int dimension, BlockPos pos, IBlockState state, long version) {
+            return this.version == version && this.state == state && this.dimension == dimension && this.pos.equals(pos);
+        }
+    }
+    
+    private final Cache<EntityPlayer, Target> targets = CacheBuilder.newBuilder().weakKeys().build();
+    
+    boolean isWhitelisted(ProtectionConfig config, EntityPlayer player, BlockPos pos, IBlockState state) {
+        if (config.bypasses(player)) {
+            return true;
+        }
+        WhitelistSnapshot snapshot = config.getSnapshot();
+        int dimension = player.world.provider.getDimension();
+        Target target = targets.getIfPresent(player);
+        if (target != null && target.matches(dimension, pos, state, snapshot.getVersion())) {
+            return target.whitelisted;
+        }
+        boolean ret = snapshot.test(player.getUniqueID(), dimension, pos, state);
+        targets.put(player, new Target(dimension, pos.toImmutable(), state, snapshot.getVersion(), ret));
+        return ret;
+    }
+}
@@ -0,0 +1,27 @@
+package com.minecampkids.protect;
+
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * Matches entities by registry name, written {@code entity:domain:path}. Lives among the block patterns so it is saved,
+ * synced and snapshotted with them, but never matches a block. Checks go through
+ * {@link WhitelistSnapshot.RuleSet#testEntity(Class)}, which caches the decision per entity class.
+ */
+class EntityPredicate extends BlockPredicate {
+
+    static final String PREFIX = "entity:";
+
+    EntityPredicate(String domain, String path) {
+        super(domain, path);
+    }
+
+    @Override
+    public boolean test(IBlockState t) {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return PREFIX + super.toString();
+    }
+}
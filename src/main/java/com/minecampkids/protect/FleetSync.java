@@ -0,0 +1,107 @@
+package com.minecampkids.protect;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps the whitelist the same across servers sharing a {@link RuleStore}. A background thread polls the store, and
+ * either publishes the local whitelist if it changed here, or fetches, parses and compiles a newer version for the
+ * server thread to swap in with {@link ProtectionConfig#applyReload()}. The server thread does no work until a new
+ * version is ready.
+ * <p>
+ * On start, a published version replaces the local whitelist. Changes made on two servers at the same moment are not
+ * merged, one of them wins.
+ */
+class FleetSync {
+
+    private static final Logger log = LogManager.getLogger(MCKidsProtect.MODID);
+
+    private final ProtectionConfig config;
+    private final RuleStore store;
+
+    @Nullable
+    private ScheduledExecutorService executor;
+
+    // Poll thread only. The last version read from or written to the store, and its contents.
+    private long seen;
+    private long syncedHash;
+    private boolean syncedEnabled;
+
+    FleetSync(ProtectionConfig config, RuleStore store) {
+        this.config = config;
+        this.store = store;
+    }
+
+    synchronized void start(int pollSeconds) {
+        if (executor != null) {
+            return;
+        }
+        seen = 0;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("MCKidsProtect Fleet Sync").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::poll, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void poll() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not sync the whitelist with the fleet", e);
+        }
+    }
+
+    private void sync() throws IOException {
+        if (config.hasPendingReload()) {
+            return; // The last fetch has not been swapped in yet, the local whitelist is out of date
+        }
+        WhitelistSnapshot local = config.getSnapshot();
+        long head = store.getHead();
+        if (head < seen) {
+            log.warn("Fleet whitelist went back from version {} to {}, publishing ours again", seen, head);
+            seen = 0;
+        }
+        if (head == seen) {
+            if (seen != 0 && isSynced(local)) {
+                return;
+            }
+            long published = store.publish(seen, local.toLines());
+            if (published != 0) {
+                seen = published;
+                markSynced(local);
+                log.info("Published whitelist version {} to the fleet", published);
+                return;
+            }
+            log.warn("Another server changed the fleet whitelist at the same time, dropping our change");
+            head = store.getHead();
+        }
+        WhitelistSnapshot read = ProtectionConfig.parseLines(store.read(head));
+        seen = head;
+        markSynced(read);
+        config.queueReload(read);
+        log.info("Fetched whitelist version {} from the fleet", head);
+    }
+
+    private boolean isSynced(WhitelistSnapshot snapshot) {
+        return snapshot.getContentHash() == syncedHash && snapshot.isEnabled() == syncedEnabled;
+    }
+
+    private void markSynced(WhitelistSnapshot snapshot) {
+        syncedHash = snapshot.getContentHash();
+        syncedEnabled = snapshot.isEnabled();
+    }
+}
@@ -4,23 +4,45 @@ import static com.minecampkids.protect.MCKidsProtect.MODID;
 import static com.minecampkids.protect.MCKidsProtect.NAME;
 import static com.minecampkids.protect.MCKidsProtect.VERSION;
 
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.block.state.BlockPistonStructureHelper;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.entity.projectile.EntityArrow;
+import net.minecraft.entity.projectile.EntityFireball;
+import net.minecraft.entity.projectile.EntityThrowable;
+import net.minecraft.util.EnumActionResult;
+import net.minecraft.util.EnumHand;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.entity.ProjectileImpactEvent;
+import net.minecraftforge.event.entity.player.AttackEntityEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ExplosionEvent;
+import net.minecraftforge.event.world.PistonEvent;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.Mod.EventHandler;
 import net.minecraftforge.fml.common.Mod.Instance;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import net.minecraftforge.fml.common.eventhandler.Event.Result;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.relauncher.Side;
@@ -33,6 +55,8 @@ public class MCKidsProtect {
     public static final String NAME = "MCKids Protect";
     public static final String VERSION = "1.0";
     
+    private static final Logger log = LogManager.getLogger(MODID);
+    
     @Instance
     public static MCKidsProtect instance;
     
@@ -40,36 +64,97 @@ public class MCKidsProtect {
     static {
         network.registerMessage(MessageInitialWhitelist.Handler.class, MessageInitialWhitelist.class, 0, Side.CLIENT);
         network.registerMessage(MessageWhitelist.Handler.class, MessageWhitelist.class, 1, Side.CLIENT);
+        network.registerMessage(MessageWhitelistRequest.Handler.class, MessageWhitelistRequest.class, 2, Side.SERVER);
     }
     
     private ProtectionConfig config;
     
+    private ConfigWatcher configWatcher;
+    
+    @Nullable
+    private FleetSync fleetSync;
+    
+    private final DigTargetCache digTargets = new DigTargetCache();
+    
+    private final WhitelistSync sync = new WhitelistSync();
+    
+    private final ProtectionStats stats = new ProtectionStats();
+    
+    private final TraceRecorder trace = new TraceRecorder();
+    
+    private final AuditLog audit = new AuditLog();
+    
+    private final DeniedPlaceFeedback deniedPlacements = new DeniedPlaceFeedback();
+    
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
         setConfig(new ProtectionConfig(event.getSuggestedConfigurationFile()));
+        configWatcher = new ConfigWatcher(config);
         
         MinecraftForge.EVENT_BUS.register(this);
         if (event.getSide().isClient()) {
             MinecraftForge.EVENT_BUS.register(new ClientEventHandler(config));
+            MinecraftForge.EVENT_BUS.register(new ProtectionOverlay(config));
         }
     }
     
     @EventHandler
     public void serverStarting(FMLServerStartingEvent event) {
         event.registerServerCommand(new ProtectionCommand());
+        stats.reset();
+        stats.start(getConfig().getConfigDir(), getConfig().getStatsInterval());
+        audit.start(getConfig().getConfigDir());
+        if (getConfig().watchConfig()) {
+            configWatcher.start();
+        }
+        File fleet = getConfig().getFleetDirectory();
+        if (fleet != null) {
+            try {
+                fleetSync = new FleetSync(getConfig(), new SharedDirectoryStore(fleet.toPath()));
+                fleetSync.start(getConfig().getFleetPollSeconds());
+            } catch (IOException e) {
+                log.error("Could not open fleet folder {}, the whitelist will not be shared", fleet, e);
+            }
+        }
+    }
+    
+    @EventHandler
+    public void serverStopping(FMLServerStoppingEvent event) {
+        getConfig().flush();
+        stats.stop();
+        trace.stopRecording();
+        audit.stop();
+        configWatcher.stop();
+        if (fleetSync != null) {
+            fleetSync.stop();
+            fleetSync = null;
+        }
     }
 
     @SubscribeEvent
     public void onBlockBreak(BlockEvent.BreakEvent event) {
-        if (!getConfig().isWhitelisted(event.getPlayer(), event.getState())) {
+        long sample = stats.startSample();
+        long traceStart = trace.startTimer();
+        boolean allowed = getConfig().isWhitelisted(event.getPlayer(), event.getPos(), event.getState());
+        stats.record(ProtectionStats.Event.BREAK, event.getPlayer(), event.getState(), allowed, sample);
+        trace.record(ProtectionStats.Event.BREAK, event.getPlayer(), event.getPos(), event.getState(), allowed, traceStart);
+        if (!allowed) {
             event.setCanceled(true);
+            audit.record(ProtectionStats.Event.BREAK, event.getPlayer(), event.getPos(), event.getState());
         }
     }
     
     @SubscribeEvent
     public void onLeftClick(PlayerInteractEvent.LeftClickBlock event) {
-        if (!getConfig().isWhitelisted(event.getEntityPlayer(), event.getWorld().getBlockState(event.getPos()))) {
+        IBlockState state = event.getWorld().getBlockState(event.getPos());
+        long sample = stats.startSample();
+        long traceStart = trace.startTimer();
+        boolean allowed = digTargets.isWhitelisted(getConfig(), event.getEntityPlayer(), event.getPos(), state);
+        stats.record(ProtectionStats.Event.LEFT_CLICK, event.getEntityPlayer(), state, allowed, sample);
+        trace.record(ProtectionStats.Event.LEFT_CLICK, event.getEntityPlayer(), event.getPos(), state, allowed, traceStart);
+        if (!allowed) {
             event.setCanceled(true);
+            audit.record(ProtectionStats.Event.LEFT_CLICK, event.getEntityPlayer(), event.getPos(), state);
             if (event.getEntity().getEntityWorld().isRemote) {
                 Minecraft.getMinecraft().playerController.resetBlockRemoving();
             }
@@ -78,29 +163,46 @@ public class MCKidsProtect {
     
     @SubscribeEvent
     public void onRightClick(PlayerInteractEvent.RightClickBlock event) {
-        if (getConfig().preventInteract() && !getConfig().isWhitelisted(event.getEntityPlayer(), event.getWorld().getBlockState(event.getPos()))) {
+        if (!getConfig().preventInteract()) return;
+        IBlockState state = event.getWorld().getBlockState(event.getPos());
+        long sample = stats.startSample();
+        long traceStart = trace.startTimer();
+        boolean allowed = getConfig().isWhitelisted(event.getEntityPlayer(), event.getPos(), state);
+        stats.record(ProtectionStats.Event.RIGHT_CLICK, event.getEntityPlayer(), state, allowed, sample);
+        trace.record(ProtectionStats.Event.RIGHT_CLICK, event.getEntityPlayer(), event.getPos(), state, allowed, traceStart);
+        if (!allowed) {
             event.setUseBlock(Result.DENY);
+            audit.record(ProtectionStats.Event.RIGHT_CLICK, event.getEntityPlayer(), event.getPos(), state);
         }
     }
     
     @SubscribeEvent
     public void onBlockPlace(BlockEvent.EntityPlaceEvent event) {
         if (!(event.getEntity() instanceof EntityPlayer)) return;
-        if (!getConfig().isWhitelisted((EntityPlayer) event.getEntity(), event.getState())) {
+        EntityPlayer placer = (EntityPlayer) event.getEntity();
+        long sample = stats.startSample();
+        long traceStart = trace.startTimer();
+        boolean allowed = getConfig().isWhitelisted(placer, event.getPos(), event.getState());
+        stats.record(ProtectionStats.Event.PLACE, placer, event.getState(), allowed, sample);
+        trace.record(ProtectionStats.Event.PLACE, placer, event.getPos(), event.getState(), allowed, traceStart);
+        if (!allowed) {
             event.setCanceled(true);
-            Entity e = event.getEntity();
-            if (e instanceof EntityPlayerMP) {
-                EntityPlayerMP player = (EntityPlayerMP) e;
-                if (player.inventoryContainer != null) {
-                    player.sendContainerToPlayer(player.inventoryContainer);
-                }
+            audit.record(ProtectionStats.Event.PLACE, placer, event.getPos(), event.getState());
+            if (placer instanceof EntityPlayerMP) {
+                EnumHand hand = event instanceof BlockEvent.PlaceEvent ? ((BlockEvent.PlaceEvent) event).getHand() : EnumHand.MAIN_HAND;
+                deniedPlacements.deny((EntityPlayerMP) placer, hand);
             }
         }
     }
     
     @SubscribeEvent
     public void onBreakSpeed(PlayerEvent.BreakSpeed event) {
-        if (!getConfig().isWhitelisted(event.getEntityPlayer(), event.getState())) {
+        long sample = stats.startSample();
+        long traceStart = trace.startTimer();
+        boolean allowed = digTargets.isWhitelisted(getConfig(), event.getEntityPlayer(), event.getPos(), event.getState());
+        stats.record(ProtectionStats.Event.BREAK_SPEED, event.getEntityPlayer(), event.getState(), allowed, sample);
+        trace.record(ProtectionStats.Event.BREAK_SPEED, event.getEntityPlayer(), event.getPos(), event.getState(), allowed, traceStart);
+        if (!allowed) {
             event.setCanceled(true);
             if (event.getEntity().getEntityWorld().isRemote) {
                 Minecraft.getMinecraft().playerController.resetBlockRemoving();
@@ -108,10 +210,97 @@ public class MCKidsProtect {
         }
     }
 
+    @SubscribeEvent
+    public void onExplosion(ExplosionEvent.Detonate event) {
+        if (!getConfig().protectFromExplosions()) return;
+        int size = event.getAffectedBlocks().size();
+        int removed = getConfig().filter(event.getWorld(), event.getAffectedBlocks());
+        stats.recordBulk(ProtectionStats.Event.EXPLOSION, event.getWorld(), size - removed, removed);
+        int removedEntities = getConfig().filterEntities(event.getAffectedEntities());
+        if (removedEntities > 0) {
+            stats.recordBulk(ProtectionStats.Event.ENTITY, event.getWorld(), 0, removedEntities);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onAttackEntity(AttackEntityEvent event) {
+        if (!isEntityWhitelisted(event.getEntityPlayer(), event.getTarget())) {
+            event.setCanceled(true);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onInteractEntity(PlayerInteractEvent.EntityInteract event) {
+        if (getConfig().preventInteract() && !isEntityWhitelisted(event.getEntityPlayer(), event.getTarget())) {
+            event.setCanceled(true);
+            event.setCancellationResult(EnumActionResult.FAIL);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onInteractEntityAt(PlayerInteractEvent.EntityInteractSpecific event) {
+        if (getConfig().preventInteract() && !isEntityWhitelisted(event.getEntityPlayer(), event.getTarget())) {
+            event.setCanceled(true);
+            event.setCancellationResult(EnumActionResult.FAIL);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onProjectileImpact(ProjectileImpactEvent event) {
+        Entity target = event.getRayTraceResult().entityHit;
+        if (target == null) {
+            return;
+        }
+        Entity projectile = event.getEntity();
+        Entity shooter = projectile instanceof EntityArrow ? ((EntityArrow) projectile).shootingEntity
+                : projectile instanceof EntityThrowable ? ((EntityThrowable) projectile).getThrower()
+                : projectile instanceof EntityFireball ? ((EntityFireball) projectile).shootingEntity
+                : null;
+        if (!isEntityWhitelisted(shooter, target)) {
+            event.setCanceled(true);
+        }
+    }
+    
+    /**
+     * Checks an entity being hit or used, by a player or by anything else.
+     */
+    private boolean isEntityWhitelisted(@Nullable Entity actor, Entity target) {
+        if (!getConfig().isProtectable(target)) {
+            return true;
+        }
+        boolean allowed = getConfig().isWhitelisted(actor instanceof EntityPlayer ? (EntityPlayer) actor : null, target);
+        stats.recordBulk(ProtectionStats.Event.ENTITY, target.world, allowed ? 1 : 0, allowed ? 0 : 1);
+        return allowed;
+    }
+    
+    @SubscribeEvent
+    public void onPiston(PistonEvent.Pre event) {
+        if (!getConfig().protectFromPistons()) return;
+        BlockPistonStructureHelper helper = event.getStructureHelper();
+        if (!helper.canMove()) {
+            return; // Vanilla will not move anything either
+        }
+        if (getConfig().anyProtected(event.getWorld(), helper.getBlocksToMove()) || getConfig().anyProtected(event.getWorld(), helper.getBlocksToDestroy())) {
+            event.setCanceled(true);
+            stats.recordBulk(ProtectionStats.Event.PISTON, event.getWorld(), 0, 1);
+        } else {
+            stats.recordBulk(ProtectionStats.Event.PISTON, event.getWorld(), 1, 0);
+        }
+    }
+    
     @SubscribeEvent
     public void onPlayerJoin(PlayerLoggedInEvent event) {
-        if (FMLCommonHandler.instance().getSide().isServer()) { 
-            network.sendTo(new MessageInitialWhitelist(getConfig().getWhitelist()), (EntityPlayerMP) event.player);
+        if (WhitelistSync.isRemote((EntityPlayerMP) event.player)) {
+            sync.sendSnapshot((EntityPlayerMP) event.player, false);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent event) {
+        if (event.phase == Phase.END) {
+            getConfig().applyReload();
+            sync.flush(FMLCommonHandler.instance().getMinecraftServerInstance());
+            deniedPlacements.flush();
         }
     }
 
@@ -122,4 +311,20 @@ public class MCKidsProtect {
     public void setConfig(ProtectionConfig config) {
         this.config = config;
     }
+    
+    WhitelistSync getSync() {
+        return sync;
+    }
+    
+    ProtectionStats getStats() {
+        return stats;
+    }
+    
+    TraceRecorder getTrace() {
+        return trace;
+    }
+    
+    AuditLog getAudit() {
+        return audit;
+    }
 }
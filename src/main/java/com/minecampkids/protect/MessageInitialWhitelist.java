@@ -3,6 +3,8 @@ package com.minecampkids.protect;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import io.netty.buffer.ByteBuf;
 import net.minecraftforge.fml.client.FMLClientHandler;
 import net.minecraftforge.fml.common.network.ByteBufUtils;
@@ -10,30 +12,77 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
+/**
+ * Describes the server's whitelist, regions, groups and tags. Sent without them on login, in which case the client either already holds
+ * patterns with the same hash or asks for them with {@link MessageWhitelistRequest}.
+ */
 public class MessageInitialWhitelist implements IMessage {
     
-    private List<String> whitelist = new ArrayList<>();
+    private long version;
+    private long hash;
+    private boolean enabled;
+    @Nullable
+    private List<String> whitelist;
+    @Nullable
+    private List<String> regions;
+    @Nullable
+    private List<String> groups;
+    @Nullable
+    private List<String> tags;
     
     public MessageInitialWhitelist() {
     }
 
-    public MessageInitialWhitelist(List<String> whitelist) {
+    public MessageInitialWhitelist(long version, long hash, boolean enabled, @Nullable List<String> whitelist, @Nullable List<String> regions, @Nullable List<String> groups, @Nullable List<String> tags) {
+        this.version = version;
+        this.hash = hash;
+        this.enabled = enabled;
         this.whitelist = whitelist;
+        this.regions = regions;
+        this.groups = groups;
+        this.tags = tags;
     }
     
     @Override
     public void toBytes(ByteBuf buf) {
-        buf.writeInt(whitelist.size());
-        for (String s : whitelist) {
+        buf.writeLong(version);
+        buf.writeLong(hash);
+        buf.writeBoolean(enabled);
+        buf.writeBoolean(whitelist != null);
+        if (whitelist != null) {
+            writeList(buf, whitelist);
+            writeList(buf, regions);
+            writeList(buf, groups);
+            writeList(buf, tags);
+        }
+    }
+    
+    private static void writeList(ByteBuf buf, List<String> list) {
+        ByteBufUtils.writeVarInt(buf, list.size(), 5);
+        for (String s : list) {
             ByteBufUtils.writeUTF8String(buf, s);
         }
     }
     
+    private static List<String> readList(ByteBuf buf) {
+        int size = ByteBufUtils.readVarInt(buf, 5);
+        List<String> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(ByteBufUtils.readUTF8String(buf));
+        }
+        return ret;
+    }
+    
     @Override
     public void fromBytes(ByteBuf buf) {
-        int size = buf.readInt();
-        for (int i = 0; i < size; i++) {
-            whitelist.add(ByteBufUtils.readUTF8String(buf));
+        version = buf.readLong();
+        hash = buf.readLong();
+        enabled = buf.readBoolean();
+        if (buf.readBoolean()) {
+            whitelist = readList(buf);
+            regions = readList(buf);
+            groups = readList(buf);
+            tags = readList(buf);
         }
     }
     
@@ -41,13 +90,8 @@ public class MessageInitialWhitelist implements IMessage {
         
         @Override
         public IMessage onMessage(MessageInitialWhitelist message, MessageContext ctx) {
-            FMLClientHandler.instance().getWorldThread(ctx.netHandler).addScheduledTask(() -> {
-                MCKidsProtect.instance.getConfig().enableSaving(false);
-                MCKidsProtect.instance.getConfig().clearWhitelist();
-                for (String s : message.whitelist) {
-                    MCKidsProtect.instance.getConfig().addWhitelist(s);
-                }
-            });
+            FMLClientHandler.instance().getWorldThread(ctx.netHandler).addScheduledTask(() -> 
+                MCKidsProtect.instance.getSync().receiveSnapshot(message.version, message.hash, message.enabled, message.whitelist, message.regions, message.groups, message.tags));
             return null;
         }
     }
@@ -1,6 +1,8 @@
 package com.minecampkids.protect;
 
-import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import io.netty.buffer.ByteBuf;
 import net.minecraftforge.fml.client.FMLClientHandler;
@@ -9,80 +11,68 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
+/**
+ * A batch of changes taking the whitelist from one server version to another. Clients that do not hold the starting
+ * version ignore it and ask for the full whitelist instead.
+ */
 public class MessageWhitelist implements IMessage {
     
-    enum Op {
-        ADD(true),
-        REMOVE(true),
-        CLEAR(false),
-        ENABLE(false),
-        DISABLE(false),
-        ;
-        
-        final boolean hasParam;
-        
-        private Op(boolean hasParam) {
-            this.hasParam = hasParam;
-        }
-    }
-
-    private Op op;
-    private String param;
+    private long fromVersion, toVersion;
+    private boolean enabled;
+    private List<String> added, removed;
     
     public MessageWhitelist() {
-        this(Op.ADD, "INVALID");
-    }
-    
-    public MessageWhitelist(Op op) {
-        this(op, null);
+        this(0, 0, true, Collections.emptyList(), Collections.emptyList());
     }
     
-    public MessageWhitelist(Op op, @Nullable String param) {
-        this.op = op;
-        this.param = param;
+    public MessageWhitelist(long fromVersion, long toVersion, boolean enabled, List<String> added, List<String> removed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.enabled = enabled;
+        this.added = added;
+        this.removed = removed;
     }
     
     @Override
     public void toBytes(ByteBuf buf) {
-        buf.writeByte(op.ordinal());
-        if (op.hasParam) {
-            ByteBufUtils.writeUTF8String(buf, param);
-        }
+        buf.writeLong(fromVersion);
+        buf.writeLong(toVersion);
+        buf.writeBoolean(enabled);
+        writeList(buf, added);
+        writeList(buf, removed);
     }
     
     @Override
     public void fromBytes(ByteBuf buf) {
-        op = Op.values()[buf.readByte()];
-        if (op.hasParam) {
-            param = ByteBufUtils.readUTF8String(buf);
+        fromVersion = buf.readLong();
+        toVersion = buf.readLong();
+        enabled = buf.readBoolean();
+        added = readList(buf);
+        removed = readList(buf);
+    }
+    
+    private static void writeList(ByteBuf buf, List<String> list) {
+        ByteBufUtils.writeVarInt(buf, list.size(), 5);
+        for (String s : list) {
+            ByteBufUtils.writeUTF8String(buf, s);
+        }
+    }
+    
+    private static List<String> readList(ByteBuf buf) {
+        int size = ByteBufUtils.readVarInt(buf, 5);
+        List<String> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(ByteBufUtils.readUTF8String(buf));
         }
+        return ret;
     }
     
     public static class Handler implements IMessageHandler<MessageWhitelist, IMessage> {
         
         @Override
         public IMessage onMessage(MessageWhitelist message, MessageContext ctx) {
-            FMLClientHandler.instance().getWorldThread(ctx.netHandler).addScheduledTask(() -> {
-                ProtectionConfig config = MCKidsProtect.instance.getConfig();
-                switch(message.op) {
-                case ADD:
-                    config.addWhitelist(message.param);
-                    break;
-                case REMOVE:
-                    config.removeWhitelist(message.param);
-                    break;
-                case CLEAR:
-                    config.clearWhitelist();
-                    break;
-                case ENABLE:
-                    config.enableWhitelist();
-                    break;
-                case DISABLE:
-                    config.disableWhitelist();
-                    break;
-                default: break;
-                }
-            });
+            FMLClientHandler.instance().getWorldThread(ctx.netHandler).addScheduledTask(() -> 
+                MCKidsProtect.instance.getSync().receiveUpdate(message.fromVersion, message.toVersion, message.enabled, message.added, message.removed));
             return null;
         }
     }
@@ -0,0 +1,34 @@
+package com.minecampkids.protect;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Sent by a client that does not hold the whitelist it was told about, or missed an update, to ask for the full list.
+ */
+public class MessageWhitelistRequest implements IMessage {
+    
+    public MessageWhitelistRequest() {
+    }
+    
+    @Override
+    public void toBytes(ByteBuf buf) {
+    }
+    
+    @Override
+    public void fromBytes(ByteBuf buf) {
+    }
+    
+    public static class Handler implements IMessageHandler<MessageWhitelistRequest, IMessage> {
+        
+        @Override
+        public IMessage onMessage(MessageWhitelistRequest message, MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            player.getServerWorld().addScheduledTask(() -> MCKidsProtect.instance.getSync().queueSnapshotRequest(player));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.entity.EntityList;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.oredict.OreDictionary;
+
+/**
+ * Tab completion for whitelist patterns. Names are indexed once into prefix tries, so completing does not scan the
+ * registry. After a {@code [}, the property names and values of the named block are offered.
+ */
+class PatternCompleter {
+
+    @Nullable
+    private static PatternCompleter instance;
+
+    private final PrefixTrie names = new PrefixTrie();
+    private final PrefixTrie paths = new PrefixTrie();
+    private final PrefixTrie domains = new PrefixTrie();
+    private final PrefixTrie ores = new PrefixTrie();
+    private final PrefixTrie entities = new PrefixTrie();
+    private final Map<String, Block> blocks = new HashMap<>();
+
+    private PatternCompleter() {
+        Set<String> seenDomains = new LinkedHashSet<>();
+        for (ResourceLocation name : Block.REGISTRY.getKeys()) {
+            String full = name.toString();
+            names.add(full, full);
+            paths.add(name.getResourcePath(), full);
+            blocks.put(full, Block.REGISTRY.getObject(name));
+            if (seenDomains.add(name.getResourceDomain())) {
+                domains.add(name.getResourceDomain(), name.getResourceDomain());
+            }
+        }
+        for (ResourceLocation name : EntityList.getEntityNameList()) {
+            entities.add(name.toString(), name.toString());
+            entities.add(name.getResourcePath(), name.toString());
+        }
+        for (String ore : OreDictionary.getOreNames()) {
+            ores.add(ore, ore);
+        }
+        names.build();
+        paths.build();
+        domains.build();
+        ores.build();
+        entities.build();
+    }
+
+    /**
+     * Registries are frozen once the server is up, so the tries are built on first use and kept.
+     */
+    static PatternCompleter get() {
+        if (instance == null) {
+            instance = new PatternCompleter();
+        }
+        return instance;
+    }
+
+    /**
+     * @param input
+     *            The partial pattern being typed.
+     * @param tagNames
+     *            The names of the defined tags, for {@code #tag:} patterns.
+     */
+    List<String> complete(String input, Collection<String> tagNames) {
+        if (input.startsWith("#")) {
+            return completeTag(input, tagNames);
+        }
+        if (input.regionMatches(true, 0, EntityPredicate.PREFIX, 0, EntityPredicate.PREFIX.length())) {
+            Set<String> ret = new LinkedHashSet<>();
+            for (String name : entities.get(input.substring(EntityPredicate.PREFIX.length()))) {
+                ret.add(EntityPredicate.PREFIX + name);
+            }
+            return new ArrayList<>(ret);
+        }
+        int bracket = input.indexOf('[');
+        if (bracket >= 0) {
+            return completeProperties(input.substring(0, bracket), input.substring(bracket + 1));
+        }
+        int colon = input.indexOf(':');
+        if (colon < 0) {
+            Set<String> ret = new LinkedHashSet<>();
+            if (input.isEmpty() || input.equals("*")) {
+                ret.add("*:*");
+            }
+            if (!input.isEmpty() && EntityPredicate.PREFIX.startsWith(input.toLowerCase(Locale.ROOT))) {
+                ret.add(EntityPredicate.PREFIX);
+            }
+            for (String domain : domains.get(input)) {
+                ret.add(domain + ":*");
+            }
+            ret.addAll(names.get(input));
+            ret.addAll(paths.get(input));
+            return new ArrayList<>(ret);
+        }
+        String domain = input.substring(0, colon);
+        String path = input.substring(colon + 1);
+        if (domain.equals("*")) {
+            Set<String> ret = new LinkedHashSet<>();
+            if (path.isEmpty()) {
+                ret.add("*:*");
+            }
+            for (String name : paths.get(path)) {
+                ret.add("*:" + new ResourceLocation(name).getResourcePath());
+            }
+            return new ArrayList<>(ret);
+        }
+        List<String> matches = names.get(input);
+        if (!path.isEmpty() || domains.get(domain).isEmpty()) {
+            return matches;
+        }
+        List<String> ret = new ArrayList<>(matches.size() + 1);
+        ret.add(domain.toLowerCase(Locale.ROOT) + ":*");
+        ret.addAll(matches);
+        return ret;
+    }
+
+    private List<String> completeTag(String input, Collection<String> tagNames) {
+        List<String> ret = new ArrayList<>();
+        if (input.regionMatches(true, 0, "#ore:", 0, 5)) {
+            for (String ore : ores.get(input.substring(5))) {
+                ret.add("#ore:" + ore);
+            }
+        } else if (input.regionMatches(true, 0, "#tag:", 0, 5)) {
+            String prefix = input.substring(5);
+            for (String tag : tagNames) {
+                if (tag.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    ret.add("#tag:" + tag);
+                }
+            }
+        } else {
+            for (String kind : new String[] { "#ore:", "#tag:" }) {
+                if (kind.startsWith(input.toLowerCase(Locale.ROOT))) {
+                    ret.add(kind);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param name
+     *            The block part of the pattern, before the {@code [}.
+     * @param props
+     *            Everything after the {@code [}, e.g. {@code facing=north,ha}.
+     */
+    private List<String> completeProperties(String name, String props) {
+        Block block = blocks.get(name.indexOf(':') < 0 ? "minecraft:" + name : name);
+        if (block == null) {
+            return Collections.emptyList();
+        }
+        int comma = props.lastIndexOf(',');
+        String base = name + "[" + props.substring(0, comma + 1);
+        String current = props.substring(comma + 1);
+        Set<String> used = new LinkedHashSet<>();
+        for (String prop : props.substring(0, comma + 1).split(",")) {
+            used.add(prop.split("=", 2)[0]);
+        }
+
+        List<String> ret = new ArrayList<>();
+        Collection<IProperty<?>> properties = block.getBlockState().getProperties();
+        int equals = current.indexOf('=');
+        if (equals < 0) {
+            for (IProperty<?> prop : properties) {
+                if (!used.contains(prop.getName()) && prop.getName().startsWith(current)) {
+                    ret.add(base + prop.getName() + "=");
+                }
+            }
+            return ret;
+        }
+        String key = current.substring(0, equals);
+        String value = current.substring(equals + 1);
+        used.add(key);
+        // Close the pattern if this was the last property left to give
+        String end = properties.stream().allMatch(p -> used.contains(p.getName())) ? "]" : "";
+        for (IProperty<?> prop : properties) {
+            if (prop.getName().equals(key)) {
+                for (String s : getValueNames(prop)) {
+                    if (s.startsWith(value)) {
+                        ret.add(base + key + "=" + s + end);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static <T extends Comparable<T>> List<String> getValueNames(IProperty<T> prop) {
+        List<String> ret = new ArrayList<>();
+        for (T value : prop.getAllowedValues()) {
+            ret.add(prop.getName(value));
+        }
+        return ret;
+    }
+}
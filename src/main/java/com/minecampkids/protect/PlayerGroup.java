@@ -0,0 +1,97 @@
+package com.minecampkids.protect;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A named set of players with whitelist patterns of their own, on top of the global whitelist. Players in a bypass
+ * group are never restricted.
+ */
+final class PlayerGroup {
+    
+    private final String name;
+    private final boolean bypass;
+    private final ImmutableSet<UUID> members;
+    private final ImmutableSet<BlockPredicate> rules;
+    
+    PlayerGroup(String name, boolean bypass, Collection<UUID> members, Collection<? extends BlockPredicate> rules) {
+        this.name = name;
+        this.bypass = bypass;
+        this.members = ImmutableSet.copyOf(members);
+        this.rules = ImmutableSet.copyOf(rules);
+    }
+    
+    /**
+     * Parses the format written by {@link #toString()}: {@code name;bypass;uuid,uuid;pattern pattern}
+     */
+    static PlayerGroup parse(String s) {
+        String[] parts = s.split(";", -1);
+        if (parts.length != 4 || !parts[0].matches("\\w+")) {
+            throw new IllegalArgumentException("Invalid group string: " + s);
+        }
+        try {
+            return new PlayerGroup(parts[0], Boolean.parseBoolean(parts[1]),
+                    Arrays.stream(parts[2].split(",")).filter(m -> !m.isEmpty()).map(UUID::fromString).collect(Collectors.toList()),
+                    Arrays.stream(parts[3].split(" ")).filter(p -> !p.isEmpty()).map(ProtectionConfig::getPredicate).collect(Collectors.toList()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid group string: " + s, e);
+        }
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    boolean isBypass() {
+        return bypass;
+    }
+    
+    ImmutableSet<UUID> getMembers() {
+        return members;
+    }
+    
+    ImmutableSet<BlockPredicate> getRules() {
+        return rules;
+    }
+    
+    PlayerGroup withBypass(boolean bypass) {
+        return new PlayerGroup(name, bypass, members, rules);
+    }
+    
+    PlayerGroup withMembers(Collection<UUID> members) {
+        return new PlayerGroup(name, bypass, members, rules);
+    }
+    
+    PlayerGroup withRules(Collection<? extends BlockPredicate> rules) {
+        return new PlayerGroup(name, bypass, members, rules);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, bypass, members, rules);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PlayerGroup other = (PlayerGroup) obj;
+        return name.equals(other.name) && bypass == other.bypass && members.equals(other.members) && rules.equals(other.rules);
+    }
+    
+    @Override
+    public String toString() {
+        return name + ";" + bypass + ";" 
+                + members.stream().map(UUID::toString).sorted().collect(Collectors.joining(",")) + ";" 
+                + rules.stream().map(Object::toString).sorted().collect(Collectors.joining(" "));
+    }
+}
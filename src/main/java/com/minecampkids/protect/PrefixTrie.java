@@ -0,0 +1,61 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps case insensitive prefixes to the sorted values of every key starting with them. Each node keeps the values of
+ * its whole subtree, so a lookup walks the prefix and returns an existing list.
+ */
+class PrefixTrie {
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+        private List<String> values = new ArrayList<>();
+    }
+
+    private final Node root = new Node();
+    private boolean built;
+
+    void add(String key, String value) {
+        if (built) {
+            throw new IllegalStateException("Trie already built");
+        }
+        Node node = root;
+        node.values.add(value);
+        for (char c : key.toLowerCase(Locale.ROOT).toCharArray()) {
+            node = node.children.computeIfAbsent(c, k -> new Node());
+            node.values.add(value);
+        }
+    }
+
+    /**
+     * Sorts and freezes the values. Call once, after adding everything.
+     */
+    PrefixTrie build() {
+        List<Node> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            List<String> values = new ArrayList<>(node.values);
+            Collections.sort(values);
+            node.values = Collections.unmodifiableList(values);
+            pending.addAll(node.children.values());
+        }
+        built = true;
+        return this;
+    }
+
+    List<String> get(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(Character.toLowerCase(prefix.charAt(i)));
+        }
+        return node == null ? Collections.emptyList() : node.values;
+    }
+}
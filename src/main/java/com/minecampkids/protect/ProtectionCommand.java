@@ -1,90 +1,408 @@
 package com.minecampkids.protect;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
-import com.minecampkids.protect.MessageWhitelist.Op;
+import javax.annotation.Nullable;
+
+import com.mojang.authlib.GameProfile;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
+import net.minecraft.command.PlayerNotFoundException;
 import net.minecraft.command.WrongUsageException;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.dedicated.DedicatedServer;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextFormatting;
-import net.minecraftforge.fml.common.FMLCommonHandler;
-import net.minecraftforge.fml.server.FMLServerHandler;
+import net.minecraft.world.World;
+import net.minecraftforge.common.ForgeHooks;
 
 public class ProtectionCommand extends CommandBase {
     
     @FunctionalInterface
     interface SubCommand {
-        String execute(String arg) throws CommandException;
+        String execute(ICommandSender sender, List<String> args) throws CommandException;
     }
     
     enum EnumSubCommand implements SubCommand {
-        HELP(s -> "Use " + TextFormatting.DARK_AQUA + "/protect add|remove <pattern> " + TextFormatting.WHITE + "to modify the whitelist.\n"
+        HELP((sender, args) -> "Use " + TextFormatting.DARK_AQUA + "/protect add|remove <pattern>... " + TextFormatting.WHITE + "to modify the whitelist.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect list [filter] [page] " + TextFormatting.WHITE + "to page through the whitelist.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect test <pattern> [page] " + TextFormatting.WHITE + "to see which block states a pattern matches.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect explain [x y z] " + TextFormatting.WHITE + "to see why the block you are looking at is protected or not.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect import|export <file> " + TextFormatting.WHITE + "to load or save patterns in the config folder.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect region add <name> <from> <to> allow|deny [dimension] " + TextFormatting.WHITE + "to allow or deny everything in an area.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect group create|add|join ... " + TextFormatting.WHITE + "to give some players extra patterns.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect tag set <name> <pattern>... " + TextFormatting.WHITE + "to name a list of patterns for use as #tag:<name>.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect stats [reset] " + TextFormatting.WHITE + "to see how often checks run and which patterns match.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect audit <player> [count] " + TextFormatting.WHITE + "to see what a player was recently stopped from doing.\n"
+                + "Use " + TextFormatting.DARK_AQUA + "/protect trace start|stop " + TextFormatting.WHITE + "to record every check to a file for offline replay.\n"
                 + "Pattern examples:\n"
                 + TextFormatting.AQUA + "  computercraft:*" + TextFormatting.GRAY + " (matches all blocks from computercraft)\n"
                 + TextFormatting.AQUA + "  minecraft:grass" + TextFormatting.GRAY + " (matches grass blocks)\n"
                 + TextFormatting.AQUA + "  *:planks" + TextFormatting.GRAY + " (matches blocks named planks from any mod)\n"
+                + TextFormatting.AQUA + "  *:*stairs*" + TextFormatting.GRAY + " (matches blocks with stairs in their name)\n"
                 + TextFormatting.AQUA + "  minecraft:log[variant=oak]" + TextFormatting.GRAY + " (matches any rotation of oak logs)\n"
+                + TextFormatting.AQUA + "  #ore:logWood" + TextFormatting.GRAY + " (matches every block registered as logWood in the ore dictionary)\n"
+                + TextFormatting.AQUA + "  entity:minecraft:item_frame" + TextFormatting.GRAY + " (lets players break and use item frames)\n"
                 + TextFormatting.AQUA + "  *:*" + TextFormatting.GRAY + " (matches everything)"),
-        LIST(s -> {
+        LIST((sender, args) -> {
+            int page = getPage(args);
+            List<String> filters = args.subList(0, hasPage(args) ? args.size() - 1 : args.size());
+            if (filters.size() > 1) {
+                throw new WrongUsageException("/protect list [filter] [page]");
+            }
             List<String> whitelist = MCKidsProtect.instance.getConfig().getWhitelist();
             if (whitelist.isEmpty()) {
                 return "Whitelist empty!";
             }
-            return whitelist.stream().collect(Collectors.joining(", "));
+            Collections.sort(whitelist);
+            if (filters.isEmpty()) {
+                return paginate("Whitelist, " + whitelist.size() + " patterns", whitelist, page);
+            }
+            String filter = filters.get(0).toLowerCase(Locale.ROOT);
+            List<String> matching = whitelist.stream().filter(s -> s.toLowerCase(Locale.ROOT).contains(filter)).collect(Collectors.toList());
+            if (matching.isEmpty()) {
+                return "No patterns contain '" + filters.get(0) + "'";
+            }
+            return paginate("Whitelist patterns containing '" + filters.get(0) + "', " + matching.size() + " of " + whitelist.size(), matching, page);
         }),
-        ADD(s -> {
-            if (s == null) {
-                throw new CommandException("Missing value to add to whitelist");
+        TEST((sender, args) -> {
+            if (args.size() != 1 && !(args.size() == 2 && hasPage(args))) {
+                throw new WrongUsageException("/protect test <pattern> [page]");
             }
+            BlockPredicate pattern;
             try {
-                if (MCKidsProtect.instance.getConfig().addWhitelist(s)) {
-                    return "Added '" + s + "' to whitelist";
-                }
-                throw new CommandException("'" + s + "' already on whitelist");
+                pattern = ProtectionConfig.getPredicate(args.get(0));
             } catch (IllegalArgumentException e) {
                 throw new CommandException(e.getMessage());
             }
+            if (pattern instanceof EntityPredicate) {
+                List<String> entities = EntityList.getEntityNameList().stream().filter(pattern::testName).map(Object::toString).sorted().collect(Collectors.toList());
+                if (entities.isEmpty()) {
+                    return "'" + args.get(0) + "' matches nothing";
+                }
+                return paginate("'" + args.get(0) + "' matches " + entities.size() + " entities", entities, getPage(args));
+            }
+            List<IBlockState> states = MCKidsProtect.instance.getConfig().getSnapshot().getMatchingStates(pattern);
+            if (states.isEmpty()) {
+                return "'" + args.get(0) + "' matches nothing";
+            }
+            // States come grouped by block, so each new block starts a run
+            List<String> lines = new ArrayList<>(states.size());
+            int blocks = 0;
+            Block last = null;
+            for (IBlockState state : states) {
+                if (state.getBlock() != last) {
+                    last = state.getBlock();
+                    blocks++;
+                }
+                lines.add(state.toString());
+            }
+            return paginate("'" + args.get(0) + "' matches " + states.size() + " states of " + blocks + " blocks", lines, getPage(args));
+        }),
+        EXPLAIN((sender, args) -> {
+            BlockPos pos;
+            if (args.size() == 3) {
+                pos = parseBlockPos(sender, args.toArray(new String[0]), 0, false);
+            } else if (args.isEmpty()) {
+                pos = getLookedAtBlock(sender);
+            } else {
+                throw new WrongUsageException("/protect explain [x y z]");
+            }
+            return explain(sender, pos);
+        }),
+        ADD((sender, args) -> {
+            if (args.isEmpty()) {
+                throw new CommandException("Missing value to add to whitelist");
+            }
+            int added = add(args);
+            if (added == 0) {
+                throw new CommandException(args.size() == 1 ? "'" + args.get(0) + "' already on whitelist" : "All patterns already on whitelist");
+            }
+            if (args.size() == 1) {
+                return "Added '" + args.get(0) + "' to whitelist";
+            }
+            return "Added " + added + " of " + args.size() + " patterns to whitelist";
         }),
-        REMOVE(s -> {
-            if (s == null) {
+        REMOVE((sender, args) -> {
+            if (args.isEmpty()) {
                 throw new CommandException("Missing value to remove from whitelist");
             }
+            int removed;
             try {
-                if (MCKidsProtect.instance.getConfig().removeWhitelist(s)) {
-                    return "Removed '" + s + "' from whitelist";
-                }
-                throw new CommandException("'" + s + "' not found in whitelist");
+                removed = MCKidsProtect.instance.getConfig().removeWhitelist(args);
             } catch (IllegalArgumentException e) {
                 throw new CommandException(e.getMessage());
             }
+            if (removed == 0) {
+                throw new CommandException(args.size() == 1 ? "'" + args.get(0) + "' not found in whitelist" : "No patterns found in whitelist");
+            }
+            if (args.size() == 1) {
+                return "Removed '" + args.get(0) + "' from whitelist";
+            }
+            return "Removed " + removed + " of " + args.size() + " patterns from whitelist";
         }),
-        CLEAR(s -> {
+        CLEAR((sender, args) -> {
             MCKidsProtect.instance.getConfig().clearWhitelist();
             return "Cleared whitelist";
         }),
-        ENABLE(s -> {
+        ENABLE((sender, args) -> {
             if (MCKidsProtect.instance.getConfig().enableWhitelist()) {
                 return "Whitelist enabled";
             }
             throw new CommandException("Whitelist already enabled");
         }),
-        DISABLE(s -> {
+        DISABLE((sender, args) -> {
             if (MCKidsProtect.instance.getConfig().disableWhitelist()) {
                 return "Whitelist disabled";
             }
             throw new CommandException("Whitelist already disabled");
         }),
+        IMPORT((sender, args) -> {
+            File file = getFile(args);
+            List<String> patterns;
+            try {
+                patterns = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty() && !s.startsWith("#"))
+                        .collect(Collectors.toList());
+            } catch (IOException e) {
+                throw new CommandException("Could not read '" + args.get(0) + "': " + e.getMessage());
+            }
+            int added = add(patterns);
+            return "Imported " + added + " new patterns from '" + args.get(0) + "'";
+        }),
+        EXPORT((sender, args) -> {
+            File file = getFile(args);
+            List<String> patterns = MCKidsProtect.instance.getConfig().getWhitelist();
+            Collections.sort(patterns);
+            try {
+                Files.write(file.toPath(), patterns, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new CommandException("Could not write '" + args.get(0) + "': " + e.getMessage());
+            }
+            return "Exported " + patterns.size() + " patterns to '" + args.get(0) + "'";
+        }),
+        REGION((sender, args) -> {
+            ProtectionConfig config = MCKidsProtect.instance.getConfig();
+            String action = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ROOT);
+            switch (action) {
+            case "list":
+                List<Region> regions = config.getRegions();
+                if (regions.isEmpty()) {
+                    return "No regions defined";
+                }
+                return regions.stream().map(Object::toString).collect(Collectors.joining("\n"));
+            case "add":
+                if (args.size() != 9 && args.size() != 10) {
+                    throw new WrongUsageException("/protect region add <name> <x1> <y1> <z1> <x2> <y2> <z2> allow|deny [dimension]");
+                }
+                String name = args.get(1);
+                if (!name.matches("\\w+")) {
+                    throw new CommandException("Region names may only contain letters, numbers and underscores");
+                }
+                String[] argArray = args.toArray(new String[0]);
+                BlockPos from = parseBlockPos(sender, argArray, 2, false);
+                BlockPos to = parseBlockPos(sender, argArray, 5, false);
+                Region.Policy policy;
+                try {
+                    policy = Region.parsePolicy(args.get(8));
+                } catch (IllegalArgumentException e) {
+                    throw new CommandException(e.getMessage());
+                }
+                int dimension = args.size() == 10 ? parseInt(args.get(9)) : sender.getEntityWorld().provider.getDimension();
+                if (!config.addRegion(new Region(name, dimension, from, to, policy))) {
+                    throw new CommandException("Region '" + name + "' already exists");
+                }
+                return "Added region '" + name + "'";
+            case "remove":
+                if (args.size() != 2) {
+                    throw new WrongUsageException("/protect region remove <name>");
+                }
+                if (!config.removeRegion(args.get(1))) {
+                    throw new CommandException("Region '" + args.get(1) + "' not found");
+                }
+                return "Removed region '" + args.get(1) + "'";
+            default:
+                throw new WrongUsageException("/protect region add|remove|list");
+            }
+        }),
+        GROUP((sender, args) -> {
+            ProtectionConfig config = MCKidsProtect.instance.getConfig();
+            String action = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ROOT);
+            try {
+                switch (action) {
+                case "list":
+                    if (args.size() == 2) {
+                        PlayerGroup group = config.getGroups().stream().filter(g -> g.getName().equals(args.get(1))).findFirst()
+                                .orElseThrow(() -> new CommandException("No group named '" + args.get(1) + "'"));
+                        return group.getName() + (group.isBypass() ? " (bypass)" : "") + "\n"
+                                + "Members: " + group.getMembers().stream().map(id -> getPlayerName(sender, id)).collect(Collectors.joining(", ")) + "\n"
+                                + "Patterns: " + group.getRules().stream().map(Object::toString).collect(Collectors.joining(", "));
+                    }
+                    List<PlayerGroup> groups = config.getGroups();
+                    if (groups.isEmpty()) {
+                        return "No groups defined";
+                    }
+                    return groups.stream()
+                            .map(g -> g.getName() + ": " + g.getMembers().size() + " members, " + g.getRules().size() + " patterns" + (g.isBypass() ? ", bypass" : ""))
+                            .collect(Collectors.joining("\n"));
+                case "create":
+                    checkArgs(args, 2, "/protect group create <name>");
+                    if (!args.get(1).matches("\\w+")) {
+                        throw new CommandException("Group names may only contain letters, numbers and underscores");
+                    }
+                    if (!config.createGroup(args.get(1))) {
+                        throw new CommandException("Group '" + args.get(1) + "' already exists");
+                    }
+                    return "Created group '" + args.get(1) + "'";
+                case "delete":
+                    checkArgs(args, 2, "/protect group delete <name>");
+                    if (!config.deleteGroup(args.get(1))) {
+                        throw new CommandException("No group named '" + args.get(1) + "'");
+                    }
+                    return "Deleted group '" + args.get(1) + "'";
+                case "add":
+                    if (args.size() < 3) {
+                        throw new WrongUsageException("/protect group add <name> <pattern>...");
+                    }
+                    return "Added " + config.addGroupWhitelist(args.get(1), args.subList(2, args.size())) + " patterns to group '" + args.get(1) + "'";
+                case "remove":
+                    if (args.size() < 3) {
+                        throw new WrongUsageException("/protect group remove <name> <pattern>...");
+                    }
+                    return "Removed " + config.removeGroupWhitelist(args.get(1), args.subList(2, args.size())) + " patterns from group '" + args.get(1) + "'";
+                case "bypass":
+                    checkArgs(args, 3, "/protect group bypass <name> true|false");
+                    boolean bypass = parseBoolean(args.get(2));
+                    if (!config.setGroupBypass(args.get(1), bypass)) {
+                        throw new CommandException("Group '" + args.get(1) + "' already " + (bypass ? "bypasses" : "does not bypass") + " protection");
+                    }
+                    return "Group '" + args.get(1) + "' now " + (bypass ? "bypasses" : "does not bypass") + " protection";
+                case "join":
+                    checkArgs(args, 3, "/protect group join <name> <player>");
+                    if (!config.joinGroup(args.get(1), getPlayerId(sender, args.get(2)))) {
+                        throw new CommandException(args.get(2) + " is already in group '" + args.get(1) + "'");
+                    }
+                    return "Moved " + args.get(2) + " into group '" + args.get(1) + "'";
+                case "leave":
+                    checkArgs(args, 2, "/protect group leave <player>");
+                    if (!config.leaveGroup(getPlayerId(sender, args.get(1)))) {
+                        throw new CommandException(args.get(1) + " is not in a group");
+                    }
+                    return "Removed " + args.get(1) + " from their group";
+                default:
+                    throw new WrongUsageException("/protect group list|create|delete|add|remove|bypass|join|leave");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CommandException(e.getMessage());
+            }
+        }),
+        TAG((sender, args) -> {
+            ProtectionConfig config = MCKidsProtect.instance.getConfig();
+            String action = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ROOT);
+            try {
+                switch (action) {
+                case "list":
+                    List<BlockTag> tags = config.getTags();
+                    if (tags.isEmpty()) {
+                        return "No tags defined";
+                    }
+                    return tags.stream()
+                            .map(t -> "#tag:" + t.getName() + ": " + t.getRules().stream().map(Object::toString).collect(Collectors.joining(", ")))
+                            .collect(Collectors.joining("\n"));
+                case "set":
+                    if (args.size() < 3) {
+                        throw new WrongUsageException("/protect tag set <name> <pattern>...");
+                    }
+                    if (!args.get(1).matches("\\w+")) {
+                        throw new CommandException("Tag names may only contain letters, numbers and underscores");
+                    }
+                    if (!config.setTag(args.get(1), args.subList(2, args.size()))) {
+                        throw new CommandException("Tag '" + args.get(1) + "' already has those patterns");
+                    }
+                    return "Set tag '" + args.get(1) + "' to " + (args.size() - 2) + " patterns";
+                case "delete":
+                    checkArgs(args, 2, "/protect tag delete <name>");
+                    if (!config.deleteTag(args.get(1))) {
+                        throw new CommandException("No tag named '" + args.get(1) + "'");
+                    }
+                    return "Deleted tag '" + args.get(1) + "'";
+                default:
+                    throw new WrongUsageException("/protect tag list|set|delete");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CommandException(e.getMessage());
+            }
+        }),
+        STATS((sender, args) -> {
+            ProtectionStats stats = MCKidsProtect.instance.getStats();
+            if (args.size() == 1 && args.get(0).equalsIgnoreCase("reset")) {
+                stats.reset();
+                return "Reset protection stats";
+            } else if (!args.isEmpty()) {
+                throw new WrongUsageException("/protect stats [reset]");
+            }
+            return String.join("\n", stats.report(MCKidsProtect.instance.getConfig().getSnapshot()));
+        }),
+        AUDIT((sender, args) -> {
+            if (args.size() != 1 && args.size() != 2) {
+                throw new WrongUsageException("/protect audit <player> [count]");
+            }
+            int count = args.size() == 2 ? parseInt(args.get(1), 1, 100) : 10;
+            List<AuditLog.Entry> entries = MCKidsProtect.instance.getAudit().getRecent(getPlayerId(sender, args.get(0)), count);
+            if (entries.isEmpty()) {
+                return "Nothing recent for " + args.get(0);
+            }
+            return entries.stream().map(Object::toString).collect(Collectors.joining("\n"));
+        }),
+        TRACE((sender, args) -> {
+            TraceRecorder trace = MCKidsProtect.instance.getTrace();
+            String action = args.size() == 1 ? args.get(0).toLowerCase(Locale.ROOT) : "";
+            switch (action) {
+            case "start":
+                if (trace.isRecording()) {
+                    throw new CommandException("Already recording a trace");
+                }
+                String name = MCKidsProtect.MODID + "-trace-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".bin";
+                try {
+                    trace.startRecording(new File(MCKidsProtect.instance.getConfig().getConfigDir(), name));
+                } catch (IOException e) {
+                    throw new CommandException("Could not create '" + name + "': " + e.getMessage());
+                } catch (IllegalStateException e) {
+                    throw new CommandException("Already recording a trace");
+                }
+                return "Recording checks to '" + name + "'";
+            case "stop":
+                if (!trace.isRecording()) {
+                    throw new CommandException("Not recording a trace");
+                }
+                long dropped = trace.stopRecording();
+                return "Stopped recording" + (dropped > 0 ? ", " + dropped + " checks were dropped" : "");
+            default:
+                throw new WrongUsageException("/protect trace start|stop");
+            }
+        }),
         ;
         
         private final SubCommand func;
@@ -94,8 +412,8 @@ public class ProtectionCommand extends CommandBase {
         }
         
         @Override
-        public String execute(String arg) throws CommandException {
-            return func.execute(arg);
+        public String execute(ICommandSender sender, List<String> args) throws CommandException {
+            return func.execute(sender, args);
         }
         
         @Override
@@ -103,7 +421,131 @@ public class ProtectionCommand extends CommandBase {
             return name().toLowerCase(Locale.ROOT);
         }
     }
-
+    
+    private static int add(List<String> patterns) throws CommandException {
+        try {
+            return MCKidsProtect.instance.getConfig().addWhitelist(patterns);
+        } catch (IllegalArgumentException e) {
+            throw new CommandException(e.getMessage());
+        }
+    }
+    
+    private static final int PAGE_SIZE = 10;
+    
+    private static boolean hasPage(List<String> args) {
+        return !args.isEmpty() && args.get(args.size() - 1).matches("\\d+");
+    }
+    
+    /**
+     * @return The page number given as the last argument, or 1.
+     */
+    private static int getPage(List<String> args) throws CommandException {
+        return hasPage(args) ? parseInt(args.get(args.size() - 1), 1) : 1;
+    }
+    
+    private static String paginate(String header, List<String> lines, int page) throws CommandException {
+        int pages = (lines.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        if (page > pages) {
+            throw new CommandException("There " + (pages == 1 ? "is only 1 page" : "are only " + pages + " pages"));
+        }
+        int from = (page - 1) * PAGE_SIZE;
+        return header + " (page " + page + " of " + pages + "):\n"
+                + String.join("\n", lines.subList(from, Math.min(lines.size(), from + PAGE_SIZE)));
+    }
+    
+    private static BlockPos getLookedAtBlock(ICommandSender sender) throws CommandException {
+        Entity entity = sender.getCommandSenderEntity();
+        if (!(entity instanceof EntityPlayer)) {
+            throw new WrongUsageException("/protect explain <x> <y> <z>");
+        }
+        EntityPlayer player = (EntityPlayer) entity;
+        RayTraceResult hit = ForgeHooks.rayTraceEyes(player, player.getEntityAttribute(EntityPlayer.REACH_DISTANCE).getAttributeValue());
+        if (hit == null || hit.typeOfHit != RayTraceResult.Type.BLOCK) {
+            throw new CommandException("Not looking at a block");
+        }
+        return hit.getBlockPos();
+    }
+    
+    /**
+     * Describes each step of the check a player would go through at the position: the whitelist switch, their group,
+     * regions, then the patterns that match. Players are explained as themselves, anyone else as a player in no group.
+     */
+    private static String explain(ICommandSender sender, BlockPos pos) {
+        ProtectionConfig config = MCKidsProtect.instance.getConfig();
+        WhitelistSnapshot snapshot = config.getSnapshot();
+        World world = sender.getEntityWorld();
+        int dimension = world.provider.getDimension();
+        IBlockState state = world.getBlockState(pos);
+        Entity entity = sender.getCommandSenderEntity();
+        EntityPlayer player = entity instanceof EntityPlayer ? (EntityPlayer) entity : null;
+        UUID id = player == null ? null : player.getUniqueID();
+        
+        List<String> ret = new ArrayList<>();
+        ret.add(state + " at " + pos.getX() + "," + pos.getY() + "," + pos.getZ() + " in dim " + dimension);
+        if (!snapshot.isEnabled()) {
+            ret.add("The whitelist is disabled");
+        }
+        if (player != null && config.bypasses(player)) {
+            ret.add(player.getName() + " bypasses protection as a " + (player.capabilities.isCreativeMode ? "creative" : "fake") + " player");
+        }
+        PlayerGroup group = id == null ? null : snapshot.getGroup(id);
+        if (group != null) {
+            ret.add("In group '" + group.getName() + "'" + (group.isBypass() ? ", which bypasses protection" : ""));
+        }
+        Region region = snapshot.getRegion(dimension, pos);
+        if (region != null) {
+            ret.add("Inside region '" + region.getName() + "', which " + (region.getPolicy() == Region.Policy.ALLOW ? "allows" : "denies") + " everything");
+        }
+        List<BlockPredicate> rules = snapshot.getRuleSet(id).getMatchingRules(state);
+        ret.add(rules.isEmpty() ? "No patterns match" : "Matching patterns: " + rules.stream().map(Object::toString).collect(Collectors.joining(", ")));
+        boolean allowed = player == null ? snapshot.test(null, dimension, pos, state) : config.isWhitelisted(player, pos, state);
+        ret.add("Result: " + (allowed ? TextFormatting.GREEN + "allowed" : TextFormatting.RED + "protected"));
+        return String.join("\n", ret);
+    }
+    
+    private static void checkArgs(List<String> args, int size, String usage) throws CommandException {
+        if (args.size() != size) {
+            throw new WrongUsageException(usage);
+        }
+    }
+    
+    private static UUID getPlayerId(ICommandSender sender, String name) throws CommandException {
+        MinecraftServer server = sender.getServer();
+        if (server != null) {
+            EntityPlayerMP player = server.getPlayerList().getPlayerByUsername(name);
+            if (player != null) {
+                return player.getUniqueID();
+            }
+            GameProfile profile = server.getPlayerProfileCache().getGameProfileForUsername(name);
+            if (profile != null) {
+                return profile.getId();
+            }
+        }
+        throw new PlayerNotFoundException("commands.generic.player.notFound", name);
+    }
+    
+    private static String getPlayerName(ICommandSender sender, UUID id) {
+        MinecraftServer server = sender.getServer();
+        GameProfile profile = server == null ? null : server.getPlayerProfileCache().getProfileByUUID(id);
+        return profile == null ? id.toString() : profile.getName();
+    }
+    
+    private static File getFile(List<String> args) throws CommandException {
+        if (args.size() != 1) {
+            throw new CommandException("Expected a single file name");
+        }
+        File dir = MCKidsProtect.instance.getConfig().getConfigDir();
+        File file = new File(dir, args.get(0));
+        try {
+            if (!file.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator)) {
+                throw new CommandException("'" + args.get(0) + "' is not inside the config folder");
+            }
+        } catch (IOException e) {
+            throw new CommandException(e.getMessage());
+        }
+        return file;
+    }
+    
     @Override
     public String getName() {
         return "protect";
@@ -114,7 +556,7 @@ public class ProtectionCommand extends CommandBase {
         return "/protect <" + Arrays.stream(EnumSubCommand.values())
                                     .map(Object::toString)
                                     .collect(Collectors.joining("|"))
-                + "> [predicate]";
+                + "> [predicate...]";
     }
     
     @Override
@@ -135,11 +577,7 @@ public class ProtectionCommand extends CommandBase {
             throw new WrongUsageException("Invalid sub-command: " + args[0]);
         }
         
-        String reply = subcommand.execute(args.length > 1 ? args[1] : null);
-        if (subcommand != EnumSubCommand.HELP && subcommand != EnumSubCommand.LIST && FMLCommonHandler.instance().getSide().isServer()) {
-            // FIXME !!!
-            MCKidsProtect.network.sendTo(new MessageWhitelist(Op.values()[subcommand.ordinal() - 2], args.length > 1 ? args[1] : null), getCommandSenderAsPlayer(sender));
-        }
+        String reply = subcommand.execute(sender, Arrays.asList(args).subList(1, args.length));
         Arrays.stream(reply.split("\n"))
               .map(TextComponentString::new)
               .forEach(sender::sendMessage);
@@ -149,8 +587,75 @@ public class ProtectionCommand extends CommandBase {
     public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, BlockPos targetPos) {
         if (args.length == 1) {
             return getListOfStringsMatchingLastWord(args, Arrays.asList(EnumSubCommand.values()));
-        } else if (args.length == 2) {
-            return getListOfStringsMatchingLastWord(args, Block.REGISTRY.getKeys());
+        } else if (args[0].equalsIgnoreCase(EnumSubCommand.REGION.name())) {
+            return getRegionTabCompletions(args, targetPos);
+        } else if (args[0].equalsIgnoreCase(EnumSubCommand.GROUP.name())) {
+            return getGroupTabCompletions(server, args);
+        } else if (args[0].equalsIgnoreCase(EnumSubCommand.TAG.name())) {
+            return getTagTabCompletions(args);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase(EnumSubCommand.TEST.name())) {
+            return getPatternCompletions(args);
+        } else if (args.length >= 2 && args.length <= 4 && args[0].equalsIgnoreCase(EnumSubCommand.EXPLAIN.name())) {
+            return getTabCompletionCoordinate(args, 1, targetPos);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase(EnumSubCommand.STATS.name())) {
+            return getListOfStringsMatchingLastWord(args, "reset");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase(EnumSubCommand.AUDIT.name())) {
+            return getListOfStringsMatchingLastWord(args, server.getOnlinePlayerNames());
+        } else if (args.length == 2 && args[0].equalsIgnoreCase(EnumSubCommand.TRACE.name())) {
+            return getListOfStringsMatchingLastWord(args, "start", "stop");
+        } else if (args.length >= 2 && (args[0].equalsIgnoreCase(EnumSubCommand.ADD.name()) || args[0].equalsIgnoreCase(EnumSubCommand.REMOVE.name()))) {
+            return getPatternCompletions(args);
+        }
+        return Collections.emptyList();
+    }
+    
+    private List<String> getGroupTabCompletions(MinecraftServer server, String[] args) {
+        if (args.length == 2) {
+            return getListOfStringsMatchingLastWord(args, "list", "create", "delete", "add", "remove", "bypass", "join", "leave");
+        }
+        String action = args[1].toLowerCase(Locale.ROOT);
+        if (args.length == 3 && !action.equals("create")) {
+            if (action.equals("leave")) {
+                return getListOfStringsMatchingLastWord(args, server.getOnlinePlayerNames());
+            }
+            return getListOfStringsMatchingLastWord(args, MCKidsProtect.instance.getConfig().getGroups().stream().map(PlayerGroup::getName).collect(Collectors.toList()));
+        } else if (args.length == 4 && action.equals("join")) {
+            return getListOfStringsMatchingLastWord(args, server.getOnlinePlayerNames());
+        } else if (args.length == 4 && action.equals("bypass")) {
+            return getListOfStringsMatchingLastWord(args, "true", "false");
+        } else if (args.length >= 4 && (action.equals("add") || action.equals("remove"))) {
+            return getPatternCompletions(args);
+        }
+        return Collections.emptyList();
+    }
+    
+    private List<String> getTagTabCompletions(String[] args) {
+        if (args.length == 2) {
+            return getListOfStringsMatchingLastWord(args, "list", "set", "delete");
+        } else if (args.length == 3 && !args[1].equalsIgnoreCase("list")) {
+            return getListOfStringsMatchingLastWord(args, MCKidsProtect.instance.getConfig().getTags().stream().map(BlockTag::getName).collect(Collectors.toList()));
+        } else if (args.length >= 4 && args[1].equalsIgnoreCase("set")) {
+            return getPatternCompletions(args);
+        }
+        return Collections.emptyList();
+    }
+    
+    private List<String> getPatternCompletions(String[] args) {
+        return PatternCompleter.get().complete(args[args.length - 1],
+                MCKidsProtect.instance.getConfig().getTags().stream().map(BlockTag::getName).collect(Collectors.toList()));
+    }
+    
+    private List<String> getRegionTabCompletions(String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 2) {
+            return getListOfStringsMatchingLastWord(args, "add", "remove", "list");
+        } else if (args[1].equalsIgnoreCase("remove") && args.length == 3) {
+            return getListOfStringsMatchingLastWord(args, MCKidsProtect.instance.getConfig().getRegions().stream().map(Region::getName).collect(Collectors.toList()));
+        } else if (args[1].equalsIgnoreCase("add")) {
+            if (args.length >= 4 && args.length <= 9) {
+                return getTabCompletionCoordinate(args, 3 + (args.length - 4) / 3 * 3, targetPos);
+            } else if (args.length == 10) {
+                return getListOfStringsMatchingLastWord(args, Arrays.asList(Region.Policy.values()));
+            }
         }
         return Collections.emptyList();
     }
@@ -1,178 +1,414 @@
 package com.minecampkids.protect;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Set;
-import java.util.function.Predicate;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
-import com.google.common.base.MoreObjects;
-import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
 
-import it.unimi.dsi.fastutil.objects.Object2BooleanLinkedOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
-import net.minecraft.block.properties.IProperty;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.entity.item.EntityArmorStand;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.config.ConfigCategory;
 import net.minecraftforge.common.config.Configuration;
 import net.minecraftforge.common.config.Property;
 import net.minecraftforge.common.util.FakePlayer;
 
 public class ProtectionConfig {
     
-    private static class BlockPredicate implements Predicate<IBlockState> {
-
-        private final String domain, path;
-        
-        public BlockPredicate(String domain, String path) {
-            Preconditions.checkNotNull(path);
-            this.domain = MoreObjects.firstNonNull(domain, "minecraft");
-            this.path = path;
-        }
-        
-        @Override
-        public boolean test(IBlockState t) {
-            ResourceLocation name = t.getBlock().getRegistryName();
-            return (domain.equals("*") || domain.equals(name.getResourceDomain())) 
-                    && (path.equals("*") || path.contentEquals(name.getResourcePath()));
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(domain, path);
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            BlockPredicate other = (BlockPredicate) obj;
-            return Objects.equals(domain, other.domain) && Objects.equals(path, other.path);
-        }
-        
-        @Override
-        public String toString() {
-            return domain + ":" + path;
-        }
-    }
-    
-    private static class StatePredicate extends BlockPredicate {
-        
-        private final Map<String, String> props;
-        private final Object2BooleanMap<IBlockState> cache = new Object2BooleanLinkedOpenHashMap<>();
-        
-        public StatePredicate(String domain, String path, Map<String, String> props) {
-            super(domain, path);
-            this.props = new HashMap<>(props);
-        }
-        
-        @SuppressWarnings({ "unchecked", "rawtypes" })
-        @Override
-        public boolean test(IBlockState t) {
-            if (!super.test(t)) {
-                return false;
-            }
-            return cache.computeIfAbsent(t, state -> 
-               state.getProperties().entrySet().stream()
-                    .map(e -> (Entry<IProperty, Comparable>) (Entry) e) // cast hack
-                    .allMatch(e -> !props.containsKey(e.getKey().getName()) // ignore properties not in the map
-                                 || props.get(e.getKey().getName()).equals(e.getKey().getName(e.getValue()))));
-        }
-
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = super.hashCode();
-            result = prime * result + Objects.hash(props);
-            return result;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (!super.equals(obj))
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            StatePredicate other = (StatePredicate) obj;
-            return Objects.equals(props, other.props);
-        }
-        
-        @Override
-        public String toString() {
-            return super.toString() + "[" + props.entrySet().stream()
-                    .map(e -> e.getKey() + "=" + e.getValue())
-                    .collect(Collectors.joining(",")) + "]";
-        }
-    }
-    
     private static final Pattern STATE = Pattern.compile(
-            "(?:(?<domain>\\w+|\\*):)?" // Optionally match domain
-          + "(?<path>\\w+|\\*)" // Always match a path, or * for wildcard
+            "(?:(?<domain>[\\w*]+):)?" // Optionally match domain
+          + "(?<path>[\\w*]+)" // Always match a path, * matches any part of a name
           + "(?:\\[(?<props>(?:\\w+=\\w+,)*(?:\\w+=\\w+))\\])?"); // Optionally match property values
     
+    private static final Pattern ENTITY = Pattern.compile("entity:(?:(?<domain>[\\w*]+):)?(?<path>[\\w*]+)");
+    
+    private static final Pattern TAG = Pattern.compile("(?<kind>#ore|#tag):(?<name>\\w+)");
+    
+    private static final long SAVE_DELAY_MS = 1000;
+    
     private final Configuration config;
     
-    private final Set<Predicate<IBlockState>> whitelist = new HashSet<>();
+    // Replaced wholesale on every change, never mutated. Writers synchronize, readers only read the reference.
+    private volatile WhitelistSnapshot whitelist;
     private final Property whitelistProp;
+    private final Property regionsProp;
+    private final Property groupsProp;
+    private final Property tagsProp;
     
     private boolean applyInCreative = false;
     private boolean preventInteract = true;
     private boolean allowFakePlayers = true;
+    private int statsInterval = 0;
+    private boolean watchConfig = true;
+    private String fleetDirectory = "";
+    private int fleetPollSeconds = 5;
+    private boolean showOverlay = false;
+    private int overlayRadius = 1;
+    private boolean protectFromExplosions = true;
+    private boolean protectFromPistons = true;
+    private boolean protectEntities = true;
     
     private final Property enabled;
     
-    private boolean savingEnabled = true;
+    private volatile boolean savingEnabled = true;
+    
+    // The Configuration is only touched while holding saveLock, so the writer thread never blocks whitelist changes
+    private final Object saveLock = new Object();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("MCKidsProtect Config Writer").setDaemon(true).build());
+    
+    // Parsed and compiled by the watcher thread from an edited file, swapped in by the server thread
+    private final AtomicReference<WhitelistSnapshot> pendingReload = new AtomicReference<>();
+    // Set by the watcher thread when an edit changed any property, so the server thread reads the options again
+    private final AtomicBoolean pendingOptions = new AtomicBoolean();
 
     public ProtectionConfig(File config) {
         this.config = new Configuration(config);
         
-        this.whitelistProp = this.config.get(Configuration.CATEGORY_GENERAL, "whitelist", new String[] {"computercraft:*"}, "");
-        readWhitelist();
-        
         this.enabled = this.config.get(Configuration.CATEGORY_GENERAL, "whitelistEnabled", true);
+        this.whitelist = new WhitelistSnapshot(0, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), enabled.getBoolean());
         
+        this.whitelistProp = this.config.get(Configuration.CATEGORY_GENERAL, "whitelist", new String[] {"computercraft:*"}, "");
+        this.regionsProp = this.config.get("regions", "regions", new String[0], "Areas where the whitelist is replaced by a fixed policy, as name;dimension;x1,y1,z1;x2,y2,z2;allow|deny");
+        this.groupsProp = this.config.get("groups", "groups", new String[0], "Player groups with their own whitelist patterns on top of the global ones, as name;bypass;uuid,uuid;pattern pattern");
+        this.tagsProp = this.config.get("tags", "tags", new String[0], "Named lists of patterns, used in patterns as #tag:name, as name;pattern pattern");
+        readWhitelist();
+        readOptions();
+        this.config.save();
+    }
+    
+    private void readOptions() {
         this.applyInCreative = this.config.get(Configuration.CATEGORY_GENERAL, "applyInCreative", applyInCreative, "Should the whitelist apply to creative players?").getBoolean();
         this.preventInteract = this.config.get(Configuration.CATEGORY_GENERAL, "preventInteract", preventInteract, "Does the whitelist also prevent interacting with blocks?").getBoolean();
         this.allowFakePlayers = this.config.get(Configuration.CATEGORY_GENERAL, "allowFakePlayers", allowFakePlayers, "Should fake players bypass protection checks").getBoolean();
-        this.config.save();
+        this.protectFromExplosions = this.config.get(Configuration.CATEGORY_GENERAL, "protectFromExplosions", protectFromExplosions, "Should explosions only destroy whitelisted blocks?").getBoolean();
+        this.protectFromPistons = this.config.get(Configuration.CATEGORY_GENERAL, "protectFromPistons", protectFromPistons, "Should pistons refuse to move or break blocks that are not whitelisted?").getBoolean();
+        this.protectEntities = this.config.get(Configuration.CATEGORY_GENERAL, "protectEntities", protectEntities, "Should item frames, paintings and armor stands be protected too? Whitelist them with patterns such as entity:minecraft:item_frame").getBoolean();
+        this.statsInterval = this.config.get(Configuration.CATEGORY_GENERAL, "statsInterval", statsInterval, "Minutes between writing protection stats next to this config, 0 to disable", 0, Integer.MAX_VALUE).getInt();
+        this.watchConfig = this.config.get(Configuration.CATEGORY_GENERAL, "watchConfig", watchConfig, "Should edits to this file apply to a running server?").getBoolean();
+        this.showOverlay = this.config.get("client", "showOverlay", showOverlay, "Should protected blocks near the player be tinted red?").getBoolean();
+        this.overlayRadius = this.config.get("client", "overlayRadius", overlayRadius, "How many chunks around the player to tint, in every direction", 0, 4).getInt();
+        this.fleetDirectory = this.config.get("fleet", "directory", fleetDirectory, "A folder shared by every server that should have the same whitelist, relative to this config's folder. Empty to keep the whitelist local.").getString().trim();
+        this.fleetPollSeconds = this.config.get("fleet", "pollSeconds", fleetPollSeconds, "Seconds between checks of the shared folder for changes", 1, 3600).getInt();
     }
     
     private void readWhitelist() {
-        String[] whitelistCfg = whitelistProp.getStringList();
+        WhitelistSnapshot read = parseWhitelist();
+        read.compile();
+        synchronized (this) {
+            whitelist = read.withVersion(whitelist.getVersion() + 1);
+        }
+    }
+    
+    /**
+     * Parses the whitelist properties into a snapshot with version 0.
+     */
+    private WhitelistSnapshot parseWhitelist() {
+        String[] whitelistCfg, regionsCfg, groupsCfg, tagsCfg;
+        boolean enabledCfg;
+        synchronized (saveLock) {
+            whitelistCfg = whitelistProp.getStringList();
+            regionsCfg = regionsProp.getStringList();
+            groupsCfg = groupsProp.getStringList();
+            tagsCfg = tagsProp.getStringList();
+            enabledCfg = enabled.getBoolean();
+        }
+        return parseWhitelist(whitelistCfg, regionsCfg, groupsCfg, tagsCfg, enabledCfg);
+    }
+    
+    private static WhitelistSnapshot parseWhitelist(String[] whitelistCfg, String[] regionsCfg, String[] groupsCfg, String[] tagsCfg, boolean enabledCfg) {
+        Set<BlockPredicate> rules = new HashSet<>();
         for (String s : whitelistCfg) {
-            addWhitelist(s);
+            rules.add(getPredicate(s));
+        }
+        List<Region> regions = getRegions(Arrays.asList(regionsCfg));
+        List<PlayerGroup> groups = getGroups(Arrays.asList(groupsCfg));
+        List<BlockTag> tags = getTags(Arrays.asList(tagsCfg));
+        return new WhitelistSnapshot(0, rules, regions, groups, tags, enabledCfg);
+    }
+    
+    /**
+     * Re-reads the file after an external edit, on the calling thread, and queues the result for {@link #applyReload()}.
+     * Edits to options alone are queued too. Does nothing if the file holds what is already loaded, which includes our
+     * own writes.
+     * 
+     * @throws IllegalArgumentException If the file contains an invalid entry, in which case nothing changes.
+     */
+    void reloadFromDisk() {
+        if (dirty.get()) {
+            return; // A change is about to be written, which will trigger another reload
+        }
+        Configuration fresh;
+        synchronized (saveLock) {
+            fresh = new Configuration(config.getConfigFile());
+        }
+        // Parse before copying anything, so an invalid file never reaches the properties we save from
+        WhitelistSnapshot read = parseWhitelist(
+                getStringList(fresh, Configuration.CATEGORY_GENERAL, whitelistProp),
+                getStringList(fresh, "regions", regionsProp),
+                getStringList(fresh, "groups", groupsProp),
+                getStringList(fresh, "tags", tagsProp),
+                fresh.get(Configuration.CATEGORY_GENERAL, enabled.getName(), enabled.getBoolean()).getBoolean());
+        boolean changed = false;
+        synchronized (saveLock) {
+            // Copy values across rather than calling load(), which would replace the Property objects we hold
+            for (String name : fresh.getCategoryNames()) {
+                ConfigCategory category = config.getCategory(name);
+                for (Map.Entry<String, Property> e : fresh.getCategory(name).entrySet()) {
+                    Property prop = category.get(e.getKey());
+                    if (prop == null) {
+                        continue;
+                    } else if (prop.isList()) {
+                        String[] value = e.getValue().getStringList();
+                        changed |= !Arrays.equals(prop.getStringList(), value);
+                        prop.set(value);
+                    } else {
+                        String value = e.getValue().getString();
+                        changed |= !prop.getString().equals(value);
+                        prop.setValue(value);
+                    }
+                }
+            }
+        }
+        if (changed) {
+            pendingOptions.set(true);
+        }
+        queueReload(read);
+    }
+    
+    /**
+     * @return The values of the same property in another copy of the config, or its current values if the copy lacks it.
+     */
+    private static String[] getStringList(Configuration from, String category, Property prop) {
+        return from.get(category, prop.getName(), prop.getStringList()).getStringList();
+    }
+    
+    /**
+     * Compiles a whitelist read from elsewhere, on the calling thread, and queues it for {@link #applyReload()}. Does
+     * nothing if it holds what is already loaded.
+     */
+    void queueReload(WhitelistSnapshot read) {
+        WhitelistSnapshot current = whitelist;
+        if (read.getContentHash() == current.getContentHash() && read.isEnabled() == current.isEnabled()) {
+            pendingReload.set(null);
+            return;
         }
+        read.compile();
+        pendingReload.set(read);
+    }
+    
+    boolean hasPendingReload() {
+        return pendingReload.get() != null;
+    }
+    
+    /**
+     * Swaps in a whitelist queued by {@link #queueReload(WhitelistSnapshot)}, along with any changed options, and writes
+     * it to the config file. Called on the server thread. A reload is dropped if the whitelist was changed in game since,
+     * as that change wins when it is written. Changed options apply either way.
+     * 
+     * @return True if a new whitelist was swapped in.
+     */
+    synchronized boolean applyReload() {
+        if (pendingOptions.getAndSet(false)) {
+            synchronized (saveLock) {
+                readOptions();
+            }
+        }
+        WhitelistSnapshot read = pendingReload.getAndSet(null);
+        if (read == null || dirty.get()) {
+            return false;
+        }
+        whitelist = read.withVersion(whitelist.getVersion() + 1);
+        save();
+        return true;
     }
 
     public boolean isWhitelisted(EntityPlayer player, IBlockState state) {
-        if (player.capabilities.isCreativeMode && !this.applyInCreative) {
+        return bypasses(player) || whitelist.test(player.getUniqueID(), state);
+    }
+    
+    public boolean isWhitelisted(EntityPlayer player, BlockPos pos, IBlockState state) {
+        return bypasses(player) || whitelist.test(player.getUniqueID(), player.world.provider.getDimension(), pos, state);
+    }
+    
+    /**
+     * Tests a change not made by a player, such as a piston or fluid, against the global whitelist. Air is never protected.
+     */
+    public boolean isWhitelisted(World world, BlockPos pos, IBlockState state) {
+        return state.getMaterial() == Material.AIR || whitelist.test(null, world.provider.getDimension(), pos, state);
+    }
+    
+    /**
+     * Removes every position that is not whitelisted from the list, in place, as for {@link #isWhitelisted(World, BlockPos, IBlockState)}.
+     * All positions are tested against the same snapshot.
+     * 
+     * @return The number of positions removed.
+     */
+    public int filter(World world, List<BlockPos> positions) {
+        WhitelistSnapshot snapshot = whitelist;
+        if (!snapshot.isEnabled()) {
+            return 0;
+        }
+        int dimension = world.provider.getDimension();
+        int size = positions.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            BlockPos pos = positions.get(i);
+            IBlockState state = world.getBlockState(pos);
+            if (state.getMaterial() == Material.AIR || snapshot.test(null, dimension, pos, state)) {
+                positions.set(kept++, pos);
+            }
+        }
+        if (kept < size) {
+            positions.subList(kept, size).clear();
+        }
+        return size - kept;
+    }
+    
+    /**
+     * @return True if any of the positions is not whitelisted, as for {@link #isWhitelisted(World, BlockPos, IBlockState)}.
+     */
+    public boolean anyProtected(World world, List<BlockPos> positions) {
+        WhitelistSnapshot snapshot = whitelist;
+        if (!snapshot.isEnabled()) {
+            return false;
+        }
+        int dimension = world.provider.getDimension();
+        for (int i = 0; i < positions.size(); i++) {
+            BlockPos pos = positions.get(i);
+            IBlockState state = world.getBlockState(pos);
+            if (state.getMaterial() != Material.AIR && !snapshot.test(null, dimension, pos, state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return True if the entity is of a kind that can be protected: item frames, paintings and other hanging entities,
+     *         and armor stands. Other entities, such as mobs, are never protected.
+     */
+    public boolean isProtectable(Entity entity) {
+        return protectEntities && (entity instanceof EntityHanging || entity instanceof EntityArmorStand);
+    }
+    
+    /**
+     * Tests an attack on or interaction with an entity. Players are checked as for blocks, anything else, such as an
+     * explosion or a mob's arrow, against the global whitelist.
+     */
+    public boolean isWhitelisted(@Nullable EntityPlayer player, Entity entity) {
+        if (!isProtectable(entity) || (player != null && bypasses(player))) {
             return true;
         }
-        if (player instanceof FakePlayer && allowFakePlayers) {
+        return whitelist.test(player == null ? null : player.getUniqueID(), entity.world.provider.getDimension(), new BlockPos(entity), entity.getClass());
+    }
+    
+    /**
+     * Removes every protected entity from the list, in place, as for {@link #isWhitelisted(EntityPlayer, Entity)} with no
+     * player.
+     * 
+     * @return The number of entities removed.
+     */
+    public int filterEntities(List<Entity> entities) {
+        int size = entities.size();
+        entities.removeIf(e -> !isWhitelisted(null, e));
+        return size - entities.size();
+    }
+    
+    boolean bypasses(EntityPlayer player) {
+        return bypasses(player.capabilities.isCreativeMode, player instanceof FakePlayer);
+    }
+    
+    boolean bypasses(boolean creative, boolean fakePlayer) {
+        if (creative && !this.applyInCreative) {
             return true;
         }
-        return !enabled.getBoolean() || whitelist.stream().anyMatch(p -> p.test(state));
+        return fakePlayer && allowFakePlayers;
+    }
+    
+    WhitelistSnapshot getSnapshot() {
+        return whitelist;
     }
     
     public boolean preventInteract() {
         return preventInteract;
     }
     
-    private Predicate<IBlockState> getPredicate(String s) {
+    public boolean protectFromExplosions() {
+        return protectFromExplosions;
+    }
+    
+    public boolean protectFromPistons() {
+        return protectFromPistons;
+    }
+    
+    boolean watchConfig() {
+        return watchConfig;
+    }
+    
+    File getConfigFile() {
+        return config.getConfigFile();
+    }
+    
+    int getStatsInterval() {
+        return statsInterval;
+    }
+    
+    /**
+     * @return The shared fleet folder, or null if the whitelist is local.
+     */
+    @Nullable
+    File getFleetDirectory() {
+        return fleetDirectory.isEmpty() ? null : getConfigDir().toPath().resolve(fleetDirectory).toFile();
+    }
+    
+    boolean showOverlay() {
+        return showOverlay;
+    }
+    
+    int getOverlayRadius() {
+        return overlayRadius;
+    }
+    
+    int getFleetPollSeconds() {
+        return fleetPollSeconds;
+    }
+    
+    static BlockPredicate getPredicate(String s) {
+        Matcher tag = TAG.matcher(s);
+        if (tag.matches()) {
+            return new TagPredicate(tag.group("kind"), tag.group("name"));
+        }
+        Matcher entity = ENTITY.matcher(s);
+        if (entity.matches()) {
+            return new EntityPredicate(entity.group("domain"), entity.group("path"));
+        }
         Matcher m = STATE.matcher(s);
         if (!m.matches()) {
             throw new IllegalArgumentException("Invalid whitelist string: " + s);
@@ -193,40 +429,365 @@ public class ProtectionConfig {
         }
     }
     
+    /**
+     * Parses a whitelist stored as {@link WhitelistSnapshot#toLines()}, into a snapshot with version 0.
+     * 
+     * @throws IllegalArgumentException If a line is invalid.
+     */
+    static WhitelistSnapshot parseLines(List<String> lines) {
+        List<String> patterns = new ArrayList<>(), regions = new ArrayList<>(), groups = new ArrayList<>(), tags = new ArrayList<>();
+        boolean enabled = true;
+        for (String line : lines) {
+            int split = line.indexOf('=');
+            String value = line.substring(split + 1);
+            switch (split < 0 ? "" : line.substring(0, split)) {
+            case "enabled":
+                enabled = Boolean.parseBoolean(value);
+                break;
+            case "whitelist":
+                patterns.add(value);
+                break;
+            case "region":
+                regions.add(value);
+                break;
+            case "group":
+                groups.add(value);
+                break;
+            case "tag":
+                tags.add(value);
+                break;
+            default:
+                if (!line.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Invalid whitelist line: " + line);
+                }
+            }
+        }
+        return new WhitelistSnapshot(0, getPredicates(patterns), getRegions(regions), getGroups(groups), getTags(tags), enabled);
+    }
+    
+    private static List<BlockPredicate> getPredicates(Collection<String> patterns) {
+        List<BlockPredicate> ret = new ArrayList<>(patterns.size());
+        for (String s : patterns) {
+            ret.add(getPredicate(s));
+        }
+        return ret;
+    }
+    
+    private static List<Region> getRegions(Collection<String> regions) {
+        List<Region> ret = new ArrayList<>(regions.size());
+        for (String s : regions) {
+            ret.add(Region.parse(s));
+        }
+        return ret;
+    }
+    
+    private static List<PlayerGroup> getGroups(Collection<String> groups) {
+        List<PlayerGroup> ret = new ArrayList<>(groups.size());
+        for (String s : groups) {
+            ret.add(PlayerGroup.parse(s));
+        }
+        return ret;
+    }
+    
+    private static List<BlockTag> getTags(Collection<String> tags) {
+        List<BlockTag> ret = new ArrayList<>(tags.size());
+        for (String s : tags) {
+            ret.add(BlockTag.parse(s));
+        }
+        return ret;
+    }
+    
     public List<String> getWhitelist() {
-        return whitelist.stream().map(Object::toString).collect(Collectors.toList());
+        return whitelist.getPatterns();
+    }
+    
+    /**
+     * Swaps in a changed snapshot. Its tables are compiled first, so the first check after a change does not pay for
+     * them on the server or render thread.
+     */
+    private void publish(WhitelistSnapshot next) {
+        next.compile();
+        whitelist = next;
     }
     
+    /**
+     * Schedules a write of the current snapshot, so a burst of changes costs a single write.
+     */
     private void save() {
-        if (savingEnabled) {
-            this.whitelistProp.set(getWhitelist().toArray(new String[0]));
-            this.config.save();
+        if (savingEnabled && dirty.compareAndSet(false, true)) {
+            saveExecutor.schedule(this::flush, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Writes any pending changes to disk immediately.
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            if (dirty.getAndSet(false) && savingEnabled) {
+                WhitelistSnapshot snapshot = whitelist;
+                this.whitelistProp.set(snapshot.getPatterns().toArray(new String[0]));
+                this.regionsProp.set(snapshot.getRegionStrings().toArray(new String[0]));
+                this.groupsProp.set(snapshot.getGroupStrings().toArray(new String[0]));
+                this.tagsProp.set(snapshot.getTagStrings().toArray(new String[0]));
+                this.enabled.set(snapshot.isEnabled());
+                this.config.save();
+            }
         }
     }
 
     public boolean addWhitelist(String s) {
-        boolean ret = whitelist.add(getPredicate(s));
-        save();
+        return addWhitelist(Collections.singletonList(s)) > 0;
+    }
+    
+    /**
+     * Adds all patterns as a single change. If any pattern is invalid, nothing is added.
+     * 
+     * @return The number of patterns that were not already on the whitelist.
+     */
+    public synchronized int addWhitelist(Collection<String> patterns) {
+        List<BlockPredicate> predicates = getPredicates(patterns);
+        Set<BlockPredicate> rules = new HashSet<>(whitelist.getRules());
+        int ret = 0;
+        for (BlockPredicate p : predicates) {
+            if (rules.add(p)) {
+                ret++;
+            }
+        }
+        if (ret > 0) {
+            publish(whitelist.withRules(rules));
+            save();
+        }
         return ret;
     }
     
     public boolean removeWhitelist(String s) {
-        boolean ret = whitelist.remove(getPredicate(s));
-        save();
+        return removeWhitelist(Collections.singletonList(s)) > 0;
+    }
+    
+    /**
+     * Removes all patterns as a single change. If any pattern is invalid, nothing is removed.
+     * 
+     * @return The number of patterns that were on the whitelist.
+     */
+    public synchronized int removeWhitelist(Collection<String> patterns) {
+        List<BlockPredicate> predicates = getPredicates(patterns);
+        Set<BlockPredicate> rules = new HashSet<>(whitelist.getRules());
+        int ret = 0;
+        for (BlockPredicate p : predicates) {
+            if (rules.remove(p)) {
+                ret++;
+            }
+        }
+        if (ret > 0) {
+            publish(whitelist.withRules(rules));
+            save();
+        }
         return ret;
     }
 
-    public void clearWhitelist() {
-        whitelist.clear();
+    public synchronized void clearWhitelist() {
+        publish(whitelist.withRules(Collections.emptySet()));
         save();
     }
 
-    private boolean setWhitelistEnabled(boolean enabled) {
-        boolean prev = this.enabled.getBoolean();
-        if (prev == enabled) {
+    private synchronized boolean setWhitelistEnabled(boolean enabled) {
+        if (whitelist.isEnabled() == enabled) {
+            return false;
+        }
+        publish(whitelist.withEnabled(enabled));
+        save();
+        return true;
+    }
+    
+    List<Region> getRegions() {
+        return new ArrayList<>(whitelist.getRegions());
+    }
+    
+    /**
+     * @return False if a region with the same name already exists.
+     */
+    synchronized boolean addRegion(Region region) {
+        if (whitelist.getRegions().stream().anyMatch(r -> r.getName().equals(region.getName()))) {
+            return false;
+        }
+        List<Region> regions = getRegions();
+        regions.add(region);
+        publish(whitelist.withRegions(regions));
+        save();
+        return true;
+    }
+    
+    synchronized boolean removeRegion(String name) {
+        List<Region> regions = getRegions();
+        if (!regions.removeIf(r -> r.getName().equals(name))) {
+            return false;
+        }
+        publish(whitelist.withRegions(regions));
+        save();
+        return true;
+    }
+    
+    List<PlayerGroup> getGroups() {
+        return new ArrayList<>(whitelist.getGroups().values());
+    }
+    
+    private PlayerGroup getGroup(String name) {
+        PlayerGroup ret = whitelist.getGroups().get(name);
+        if (ret == null) {
+            throw new IllegalArgumentException("No group named '" + name + "'");
+        }
+        return ret;
+    }
+    
+    private void putGroup(PlayerGroup group) {
+        Map<String, PlayerGroup> groups = new HashMap<>(whitelist.getGroups());
+        groups.put(group.getName(), group);
+        publish(whitelist.withGroups(groups.values()));
+        save();
+    }
+    
+    /**
+     * @return False if a group with the same name already exists.
+     */
+    synchronized boolean createGroup(String name) {
+        if (whitelist.getGroups().containsKey(name)) {
+            return false;
+        }
+        putGroup(new PlayerGroup(name, false, Collections.emptySet(), Collections.emptySet()));
+        return true;
+    }
+    
+    synchronized boolean deleteGroup(String name) {
+        Map<String, PlayerGroup> groups = new HashMap<>(whitelist.getGroups());
+        if (groups.remove(name) == null) {
+            return false;
+        }
+        publish(whitelist.withGroups(groups.values()));
+        save();
+        return true;
+    }
+    
+    /**
+     * Adds all patterns to a group as a single change. If any pattern is invalid, nothing is added.
+     * 
+     * @return The number of patterns that were not already in the group.
+     */
+    synchronized int addGroupWhitelist(String name, Collection<String> patterns) {
+        PlayerGroup group = getGroup(name);
+        Set<BlockPredicate> rules = new HashSet<>(group.getRules());
+        int ret = 0;
+        for (BlockPredicate p : getPredicates(patterns)) {
+            if (rules.add(p)) {
+                ret++;
+            }
+        }
+        if (ret > 0) {
+            putGroup(group.withRules(rules));
+        }
+        return ret;
+    }
+    
+    /**
+     * @return The number of patterns that were in the group.
+     */
+    synchronized int removeGroupWhitelist(String name, Collection<String> patterns) {
+        PlayerGroup group = getGroup(name);
+        Set<BlockPredicate> rules = new HashSet<>(group.getRules());
+        int ret = 0;
+        for (BlockPredicate p : getPredicates(patterns)) {
+            if (rules.remove(p)) {
+                ret++;
+            }
+        }
+        if (ret > 0) {
+            putGroup(group.withRules(rules));
+        }
+        return ret;
+    }
+    
+    synchronized boolean setGroupBypass(String name, boolean bypass) {
+        PlayerGroup group = getGroup(name);
+        if (group.isBypass() == bypass) {
+            return false;
+        }
+        putGroup(group.withBypass(bypass));
+        return true;
+    }
+    
+    /**
+     * Moves a player into a group, out of any group they were in before.
+     * 
+     * @return False if they were already in the group.
+     */
+    synchronized boolean joinGroup(String name, UUID player) {
+        PlayerGroup group = getGroup(name);
+        if (group.getMembers().contains(player)) {
             return false;
         }
-        this.enabled.set(enabled);
+        List<PlayerGroup> groups = new ArrayList<>();
+        for (PlayerGroup g : whitelist.getGroups().values()) {
+            if (g == group) {
+                groups.add(g.withMembers(ImmutableSet.<UUID>builder().addAll(g.getMembers()).add(player).build()));
+            } else if (g.getMembers().contains(player)) {
+                groups.add(g.withMembers(Sets.difference(g.getMembers(), Collections.singleton(player))));
+            } else {
+                groups.add(g);
+            }
+        }
+        publish(whitelist.withGroups(groups));
+        save();
+        return true;
+    }
+    
+    /**
+     * @return False if the player was not in any group.
+     */
+    synchronized boolean leaveGroup(UUID player) {
+        List<PlayerGroup> groups = new ArrayList<>();
+        boolean ret = false;
+        for (PlayerGroup g : whitelist.getGroups().values()) {
+            if (g.getMembers().contains(player)) {
+                groups.add(g.withMembers(Sets.difference(g.getMembers(), Collections.singleton(player))));
+                ret = true;
+            } else {
+                groups.add(g);
+            }
+        }
+        if (ret) {
+            publish(whitelist.withGroups(groups));
+            save();
+        }
+        return ret;
+    }
+    
+    List<BlockTag> getTags() {
+        return new ArrayList<>(whitelist.getTags().values());
+    }
+    
+    /**
+     * Creates a tag or replaces its patterns. If any pattern is invalid, nothing changes.
+     * 
+     * @return False if the tag already had exactly these patterns.
+     */
+    synchronized boolean setTag(String name, Collection<String> patterns) {
+        BlockTag tag = new BlockTag(name, getPredicates(patterns));
+        if (tag.equals(whitelist.getTags().get(name))) {
+            return false;
+        }
+        Map<String, BlockTag> tags = new HashMap<>(whitelist.getTags());
+        tags.put(name, tag);
+        publish(whitelist.withTags(tags.values()));
+        save();
+        return true;
+    }
+    
+    synchronized boolean deleteTag(String name) {
+        Map<String, BlockTag> tags = new HashMap<>(whitelist.getTags());
+        if (tags.remove(name) == null) {
+            return false;
+        }
+        publish(whitelist.withTags(tags.values()));
         save();
         return true;
     }
@@ -239,11 +800,44 @@ public class ProtectionConfig {
         return setWhitelistEnabled(false);
     }
     
+    /**
+     * Replaces the whitelist with one received from a server. Saving is disabled until {@link #restore()}.
+     */
+    public synchronized void setRemoteWhitelist(Collection<String> patterns, Collection<String> regions, Collection<String> groups, Collection<String> tags, boolean enabled) {
+        enableSaving(false);
+        publish(new WhitelistSnapshot(whitelist.getVersion() + 1, getPredicates(patterns), getRegions(regions), getGroups(groups), getTags(tags), enabled));
+    }
+    
+    /**
+     * Applies a batch of changes received from a server as a single snapshot.
+     */
+    public synchronized void updateRemoteWhitelist(Collection<String> added, Collection<String> removed, boolean enabled) {
+        enableSaving(false);
+        Set<BlockPredicate> rules = new HashSet<>(whitelist.getRules());
+        rules.removeAll(getPredicates(removed));
+        rules.addAll(getPredicates(added));
+        publish(new WhitelistSnapshot(whitelist.getVersion() + 1, rules, whitelist.getRegions(), whitelist.getGroups().values(), whitelist.getTags().values(), enabled));
+    }
+    
+    public File getConfigDir() {
+        return config.getConfigFile().getParentFile();
+    }
+    
     public void enableSaving(boolean enable) {
+        if (!enable) {
+            flush();
+        }
         this.savingEnabled = enable;
     }
     
+    /**
+     * Goes back to the local whitelist after leaving a server that replaced it. Does nothing otherwise, as the local
+     * whitelist is still loaded and may have changes waiting to be written.
+     */
     public void restore() {
+        if (savingEnabled) {
+            return;
+        }
         readWhitelist();
         enableSaving(true);
     }
@@ -0,0 +1,422 @@
+package com.minecampkids.protect;
+
+import javax.annotation.Nullable;
+
+import org.lwjgl.opengl.GL11;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GLAllocation;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+/**
+ * Tints the outside faces of protected blocks near the player. Each loaded chunk keeps a bitmask of its protected
+ * blocks, built a section at a time once it is near the player, kept up to date as single blocks change, and rebuilt
+ * when the whitelist changes. The faces are compiled into a display list that is only rebuilt when a mask changes or the
+ * player moves into another chunk section, so drawing a frame costs the same however many blocks are tinted. While
+ * sections near the player are still waiting to be scanned the old list is kept, rather than rebuilt every frame.
+ */
+public class ProtectionOverlay implements IWorldEventListener {
+
+    // Chunk data arrives a few chunks at a time, spread scanning them over frames. Counts 16x16x16 sections that are not
+    // empty, each costing 4096 checks.
+    private static final int MAX_SCANS_PER_FRAME = 8;
+
+    // Pushes faces slightly outwards, so they do not flicker against the block's own faces
+    private static final double EXPAND = 0.002;
+
+    private static final class ChunkMask {
+
+        // One bit per block, one array of 64 longs per 16 high section, null where nothing is protected
+        private final long[][] sections = new long[16][];
+        // One bit per section that needs scanning again
+        private int stale = 0xFFFF;
+
+        boolean isValid(int section) {
+            return (stale & (1 << section)) == 0;
+        }
+
+        void invalidate(int from, int to) {
+            for (int i = Math.max(0, from); i <= Math.min(15, to); i++) {
+                stale |= 1 << i;
+            }
+        }
+
+        boolean get(int x, int y, int z) {
+            long[] section = sections[y >> 4];
+            int index = getIndex(x, y, z);
+            return section != null && (section[index >> 6] & (1L << index)) != 0;
+        }
+
+        void set(int x, int y, int z, boolean value) {
+            long[] section = sections[y >> 4];
+            if (section == null) {
+                if (!value) {
+                    return;
+                }
+                section = sections[y >> 4] = new long[64];
+            }
+            int index = getIndex(x, y, z);
+            if (value) {
+                section[index >> 6] |= 1L << index;
+            } else {
+                section[index >> 6] &= ~(1L << index);
+            }
+        }
+
+        private static int getIndex(int x, int y, int z) {
+            return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        }
+    }
+
+    private final ProtectionConfig config;
+
+    @Nullable
+    private World world;
+    private final Long2ObjectMap<ChunkMask> masks = new Long2ObjectOpenHashMap<>();
+    private long maskVersion = -1;
+
+    private int displayList = -1;
+    private boolean listDirty = true;
+    // The section the list was built around, in section coordinates
+    private int listX, listY, listZ, listRadius = -1;
+
+    public ProtectionOverlay(ProtectionConfig config) {
+        this.config = config;
+    }
+
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        if (event.getWorld() instanceof WorldClient) {
+            setWorld(event.getWorld());
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (event.getWorld() == world) {
+            setWorld(null);
+        }
+    }
+
+    private void setWorld(@Nullable World world) {
+        if (this.world != null) {
+            this.world.removeEventListener(this);
+        }
+        this.world = world;
+        if (world != null) {
+            world.addEventListener(this);
+        }
+        masks.clear();
+        deleteList();
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getWorld() == world) {
+            masks.put(ChunkPos.asLong(event.getChunk().x, event.getChunk().z), new ChunkMask());
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (event.getWorld() == world && masks.remove(ChunkPos.asLong(event.getChunk().x, event.getChunk().z)) != null) {
+            listDirty = true;
+        }
+    }
+
+    @SubscribeEvent
+    public void onRenderWorldLast(RenderWorldLastEvent event) {
+        Minecraft mc = Minecraft.getMinecraft();
+        Entity viewer = mc.getRenderViewEntity();
+        if (!config.showOverlay()) {
+            deleteList();
+            return;
+        }
+        if (world == null || mc.player == null || viewer == null || config.bypasses(mc.player)) {
+            return;
+        }
+        WhitelistSnapshot snapshot = config.getSnapshot();
+        if (snapshot.getVersion() != maskVersion) {
+            for (ChunkMask mask : masks.values()) {
+                mask.stale = 0xFFFF;
+            }
+            maskVersion = snapshot.getVersion();
+            listDirty = true;
+        }
+
+        int radius = config.getOverlayRadius();
+        int x = MathHelper.floor(viewer.posX) >> 4;
+        int y = MathHelper.clamp(MathHelper.floor(viewer.posY) >> 4, 0, 15);
+        int z = MathHelper.floor(viewer.posZ) >> 4;
+        if (x != listX || y != listY || z != listZ || radius != listRadius) {
+            listDirty = true;
+        }
+
+        int scans = 0;
+        for (int cx = x - radius; cx <= x + radius && scans < MAX_SCANS_PER_FRAME; cx++) {
+            for (int cz = z - radius; cz <= z + radius && scans < MAX_SCANS_PER_FRAME; cz++) {
+                ChunkMask mask = masks.get(ChunkPos.asLong(cx, cz));
+                if (mask != null && mask.stale != 0) {
+                    scans += scan(mask, cx, cz, snapshot, mc.player, MAX_SCANS_PER_FRAME - scans);
+                }
+            }
+        }
+
+        // Running out of budget means more sections are waiting, wait for those before building the list again
+        if (listDirty && (scans < MAX_SCANS_PER_FRAME || displayList < 0)) {
+            buildList(x, y, z, radius);
+            listDirty = false;
+        }
+
+        float partialTicks = event.getPartialTicks();
+        double camX = viewer.lastTickPosX + (viewer.posX - viewer.lastTickPosX) * partialTicks;
+        double camY = viewer.lastTickPosY + (viewer.posY - viewer.lastTickPosY) * partialTicks;
+        double camZ = viewer.lastTickPosZ + (viewer.posZ - viewer.lastTickPosZ) * partialTicks;
+        GlStateManager.pushMatrix();
+        GlStateManager.translate((listX - listRadius) * 16 - camX, (listY - listRadius) * 16 - camY, (listZ - listRadius) * 16 - camZ);
+        GlStateManager.disableTexture2D();
+        GlStateManager.disableLighting();
+        GlStateManager.disableCull();
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA,
+                GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ZERO);
+        GlStateManager.depthMask(false);
+        GlStateManager.color(1, 0.2F, 0.2F, 0.25F);
+        GlStateManager.callList(displayList);
+        GlStateManager.color(1, 1, 1, 1);
+        GlStateManager.depthMask(true);
+        GlStateManager.disableBlend();
+        GlStateManager.enableCull();
+        GlStateManager.enableTexture2D();
+        GlStateManager.popMatrix();
+    }
+
+    /**
+     * Scans stale sections of the chunk until {@code budget} sections with blocks in them are done. Empty sections
+     * are free.
+     *
+     * @return The number of sections with blocks that were scanned.
+     */
+    private int scan(ChunkMask mask, int chunkX, int chunkZ, WhitelistSnapshot snapshot, EntityPlayer player, int budget) {
+        Chunk chunk = world.getChunkProvider().getLoadedChunk(chunkX, chunkZ);
+        if (chunk == null) {
+            return 0;
+        }
+        int dimension = world.provider.getDimension();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        int scanned = 0;
+        for (int i = 0; i < storages.length && scanned < budget; i++) {
+            if (mask.isValid(i)) {
+                continue;
+            }
+            mask.sections[i] = null;
+            mask.stale &= ~(1 << i);
+            listDirty = true;
+            ExtendedBlockStorage storage = storages[i];
+            if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty()) {
+                continue;
+            }
+            scanned++;
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        IBlockState state = storage.get(x, y, z);
+                        pos.setPos(chunkX << 4 | x, i << 4 | y, chunkZ << 4 | z);
+                        mask.set(x, i << 4 | y, z, isProtected(snapshot, player, dimension, pos, state));
+                    }
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private static boolean isProtected(WhitelistSnapshot snapshot, EntityPlayer player, int dimension, BlockPos pos, IBlockState state) {
+        return state.getMaterial() != Material.AIR && !snapshot.test(player.getUniqueID(), dimension, pos, state);
+    }
+
+    private boolean isProtected(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return false;
+        }
+        ChunkMask mask = masks.get(ChunkPos.asLong(x >> 4, z >> 4));
+        return mask != null && mask.isValid(y >> 4) && mask.get(x, y, z);
+    }
+
+    /**
+     * Compiles every face of a protected block that borders an unprotected one, around the given section.
+     */
+    private void buildList(int sectionX, int sectionY, int sectionZ, int radius) {
+        if (displayList < 0) {
+            displayList = GLAllocation.generateDisplayLists(1);
+        }
+        listX = sectionX;
+        listY = sectionY;
+        listZ = sectionZ;
+        listRadius = radius;
+        int originX = (listX - listRadius) << 4, originY = (listY - listRadius) << 4, originZ = (listZ - listRadius) << 4;
+        int size = (listRadius * 2 + 1) << 4;
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder buffer = tessellator.getBuffer();
+        GlStateManager.glNewList(displayList, GL11.GL_COMPILE);
+        buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION);
+        for (int cx = 0; cx < size; cx += 16) {
+            for (int cz = 0; cz < size; cz += 16) {
+                ChunkMask mask = masks.get(ChunkPos.asLong((originX + cx) >> 4, (originZ + cz) >> 4));
+                if (mask == null) {
+                    continue;
+                }
+                for (int cy = Math.max(0, -originY); cy < size && originY + cy < 256; cy += 16) {
+                    int section = (originY + cy) >> 4;
+                    if (!mask.isValid(section) || mask.sections[section] == null) {
+                        continue;
+                    }
+                    for (int y = cy; y < cy + 16; y++) {
+                        for (int z = cz; z < cz + 16; z++) {
+                            for (int x = cx; x < cx + 16; x++) {
+                                if (!mask.get(originX + x, originY + y, originZ + z)) {
+                                    continue;
+                                }
+                                for (EnumFacing face : EnumFacing.VALUES) {
+                                    Vec3i offset = face.getDirectionVec();
+                                    if (!isProtected(originX + x + offset.getX(), originY + y + offset.getY(), originZ + z + offset.getZ())) {
+                                        addFace(buffer, x, y, z, face);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        tessellator.draw();
+        GlStateManager.glEndList();
+    }
+
+    private void deleteList() {
+        if (displayList >= 0) {
+            GLAllocation.deleteDisplayLists(displayList);
+            displayList = -1;
+        }
+        listDirty = true;
+    }
+
+    private static void addFace(BufferBuilder buffer, int x, int y, int z, EnumFacing face) {
+        double x0 = x - EXPAND, y0 = y - EXPAND, z0 = z - EXPAND;
+        double x1 = x + 1 + EXPAND, y1 = y + 1 + EXPAND, z1 = z + 1 + EXPAND;
+        switch (face) {
+        case DOWN:
+            quad(buffer, x0, y0, z0, x1, y0, z0, x1, y0, z1, x0, y0, z1);
+            break;
+        case UP:
+            quad(buffer, x0, y1, z0, x0, y1, z1, x1, y1, z1, x1, y1, z0);
+            break;
+        case NORTH:
+            quad(buffer, x0, y0, z0, x0, y1, z0, x1, y1, z0, x1, y0, z0);
+            break;
+        case SOUTH:
+            quad(buffer, x0, y0, z1, x1, y0, z1, x1, y1, z1, x0, y1, z1);
+            break;
+        case WEST:
+            quad(buffer, x0, y0, z0, x0, y0, z1, x0, y1, z1, x0, y1, z0);
+            break;
+        case EAST:
+            quad(buffer, x1, y0, z0, x1, y1, z0, x1, y1, z1, x1, y0, z1);
+            break;
+        }
+    }
+
+    private static void quad(BufferBuilder buffer, double ax, double ay, double az, double bx, double by, double bz,
+            double cx, double cy, double cz, double dx, double dy, double dz) {
+        buffer.pos(ax, ay, az).endVertex();
+        buffer.pos(bx, by, bz).endVertex();
+        buffer.pos(cx, cy, cz).endVertex();
+        buffer.pos(dx, dy, dz).endVertex();
+    }
+
+    @Override
+    public void notifyBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {
+        ChunkMask mask = masks.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+        EntityPlayer player = Minecraft.getMinecraft().player;
+        if (mask == null || !mask.isValid(pos.getY() >> 4) || player == null) {
+            return;
+        }
+        boolean protect = isProtected(config.getSnapshot(), player, world.provider.getDimension(), pos, newState);
+        if (mask.get(pos.getX(), pos.getY(), pos.getZ()) != protect) {
+            mask.set(pos.getX(), pos.getY(), pos.getZ(), protect);
+            listDirty = true;
+        }
+    }
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {
+        // Chunk data from the server marks whole chunks. Smaller ranges come from single block changes, which
+        // notifyBlockUpdate already handled.
+        if (x2 - x1 < 15 || z2 - z1 < 15) {
+            return;
+        }
+        for (int cx = x1 >> 4; cx <= x2 >> 4; cx++) {
+            for (int cz = z1 >> 4; cz <= z2 >> 4; cz++) {
+                ChunkMask mask = masks.get(ChunkPos.asLong(cx, cz));
+                if (mask != null) {
+                    mask.invalidate(y1 >> 4, y2 >> 4);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void notifyLightSet(BlockPos pos) {}
+
+    @Override
+    public void playSoundToAllNearExcept(@Nullable EntityPlayer player, SoundEvent sound, SoundCategory category, double x, double y, double z, float volume, float pitch) {}
+
+    @Override
+    public void playRecord(SoundEvent sound, BlockPos pos) {}
+
+    @Override
+    public void spawnParticle(int particleID, boolean ignoreRange, double x, double y, double z, double xSpeed, double ySpeed, double zSpeed, int... parameters) {}
+
+    @Override
+    public void spawnParticle(int id, boolean ignoreRange, boolean minimiseParticleLevel, double x, double y, double z, double xSpeed, double ySpeed, double zSpeed, int... parameters) {}
+
+    @Override
+    public void onEntityAdded(Entity entity) {}
+
+    @Override
+    public void onEntityRemoved(Entity entity) {}
+
+    @Override
+    public void broadcastSound(int soundID, BlockPos pos, int data) {}
+
+    @Override
+    public void playEvent(EntityPlayer player, int type, BlockPos pos, int data) {}
+
+    @Override
+    public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {}
+}
@@ -0,0 +1,263 @@
+package com.minecampkids.protect;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.World;
+
+/**
+ * Server side counters for every protection check. Decisions are always counted, while latency and per-rule hits are
+ * only recorded for one check in {@value #SAMPLE_RATE}, as finding the matching rules costs far more than the check.
+ * Sampled states are queued and matched against the rules by a background thread, never on the server thread.
+ */
+class ProtectionStats {
+
+    private static final Logger log = LogManager.getLogger(MCKidsProtect.MODID);
+
+    enum Event {
+        BREAK,
+        LEFT_CLICK,
+        RIGHT_CLICK,
+        PLACE,
+        BREAK_SPEED,
+        EXPLOSION,
+        PISTON,
+        FLUID, // No longer recorded, kept so trace event ordinals do not shift
+        ENTITY,
+        ;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final int SAMPLE_RATE = 64;
+
+    // Bucket n counts checks that took [2^n, 2^(n+1)) nanoseconds
+    private static final int BUCKETS = 40;
+
+    private static final String FILE_NAME = MCKidsProtect.MODID + "-stats.txt";
+
+    private static final int HIT_QUEUE_SIZE = 1 << 12;
+
+    private static final class Hit {
+
+        final WhitelistSnapshot.RuleSet ruleSet;
+        final IBlockState state;
+
+        Hit(WhitelistSnapshot.RuleSet ruleSet, IBlockState state) {
+            this.ruleSet = ruleSet;
+            this.state = state;
+        }
+    }
+
+    // Indexed by event ordinal * 2 + (allowed ? 1 : 0)
+    private final LongAdder[] decisions = new LongAdder[Event.values().length * 2];
+    private final LongAdder[] latency = new LongAdder[BUCKETS];
+    private final Map<BlockPredicate, LongAdder> ruleHits = new ConcurrentHashMap<>();
+    // Samples waiting to be counted, dropped if the counter falls behind
+    private final BlockingQueue<Hit> hits = new ArrayBlockingQueue<>(HIT_QUEUE_SIZE);
+
+    private volatile long since = System.currentTimeMillis();
+
+    @Nullable
+    private ScheduledExecutorService executor;
+
+    ProtectionStats() {
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = new LongAdder();
+        }
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Call before a check.
+     *
+     * @return The start time if this check should be sampled, otherwise 0.
+     */
+    long startSample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Call after a check with the value of {@link #startSample()}. Checks made on the client are ignored.
+     */
+    void record(Event event, EntityPlayer player, IBlockState state, boolean allowed, long sample) {
+        if (player.world.isRemote) {
+            return;
+        }
+        decisions[event.ordinal() * 2 + (allowed ? 1 : 0)].increment();
+        if (sample != 0) {
+            long elapsed = Math.max(1, System.nanoTime() - sample);
+            latency[Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(elapsed))].increment();
+            if (allowed) {
+                hits.offer(new Hit(MCKidsProtect.instance.getConfig().getSnapshot().getRuleSet(player.getUniqueID()), state));
+            }
+        }
+    }
+
+    /**
+     * Counts the blocks of a change not made by a player. These are not sampled.
+     */
+    void recordBulk(Event event, World world, int allowed, int denied) {
+        if (world.isRemote) {
+            return;
+        }
+        decisions[event.ordinal() * 2 + 1].add(allowed);
+        decisions[event.ordinal() * 2].add(denied);
+    }
+
+    private void countRuleHits() {
+        Hit hit;
+        while ((hit = hits.poll()) != null) {
+            for (BlockPredicate rule : hit.ruleSet.getRules()) {
+                if (rule.test(hit.state)) {
+                    ruleHits.computeIfAbsent(rule, r -> new LongAdder()).increment();
+                }
+            }
+        }
+    }
+
+    void reset() {
+        for (LongAdder adder : decisions) {
+            adder.reset();
+        }
+        for (LongAdder adder : latency) {
+            adder.reset();
+        }
+        hits.clear();
+        ruleHits.clear();
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * A human readable summary, one line per entry.
+     */
+    List<String> report(WhitelistSnapshot snapshot) {
+        List<String> ret = new ArrayList<>();
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - since);
+        ret.add("Checks over the last " + minutes + " minutes (allowed/denied):");
+        for (Event event : Event.values()) {
+            long allowed = decisions[event.ordinal() * 2 + 1].sum();
+            long denied = decisions[event.ordinal() * 2].sum();
+            if (allowed + denied > 0) {
+                ret.add("  " + event + ": " + allowed + "/" + denied);
+            }
+        }
+
+        long[] counts = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency[i].sum();
+            samples += counts[i];
+        }
+        if (samples > 0) {
+            ret.add("Latency from " + samples + " samples: p50 < " + formatNanos(percentile(counts, samples, 0.5))
+                    + ", p99 < " + formatNanos(percentile(counts, samples, 0.99))
+                    + ", max < " + formatNanos(percentile(counts, samples, 1)));
+        }
+
+        List<Map.Entry<BlockPredicate, LongAdder>> hot = ruleHits.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<BlockPredicate, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(10)
+                .collect(Collectors.toList());
+        if (!hot.isEmpty()) {
+            ret.add("Most matched rules (sampled 1 in " + SAMPLE_RATE + "):");
+            for (Map.Entry<BlockPredicate, LongAdder> e : hot) {
+                ret.add("  " + e.getKey() + ": " + e.getValue().sum());
+            }
+        }
+        List<String> unused = snapshot.getRules().stream()
+                .filter(r -> !ruleHits.containsKey(r))
+                .map(Object::toString)
+                .sorted()
+                .collect(Collectors.toList());
+        if (!unused.isEmpty() && samples > 0) {
+            ret.add("Rules never matched in samples: " + String.join(", ", unused));
+        }
+        return ret;
+    }
+
+    private static long percentile(long[] counts, long total, double fraction) {
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target && counts[i] > 0) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        } else if (nanos < 10_000_000) {
+            return nanos / 1000 + "us";
+        }
+        return nanos / 1_000_000 + "ms";
+    }
+
+    /**
+     * Starts counting rule hits, and writing the report to a file in the config folder every {@code minutes} minutes.
+     * Nothing is written if {@code minutes} is not positive.
+     */
+    synchronized void start(File dir, int minutes) {
+        stop();
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("MCKidsProtect Stats").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::countRuleHits, 1, 1, TimeUnit.SECONDS);
+        if (minutes > 0) {
+            File file = new File(dir, FILE_NAME);
+            executor.scheduleWithFixedDelay(() -> dump(file), minutes, minutes, TimeUnit.MINUTES);
+        }
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    void dump(File file) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + LocalDateTime.now());
+        lines.addAll(report(MCKidsProtect.instance.getConfig().getSnapshot()));
+        try {
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not write protection stats to {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.minecampkids.protect;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * A named box in one dimension where the whitelist is replaced by a fixed policy.
+ */
+final class Region {
+    
+    enum Policy {
+        ALLOW,
+        DENY,
+        ;
+        
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    private static final Pattern FORMAT = Pattern.compile(
+            "(?<name>\\w+);(?<dim>-?\\d+);"
+          + "(?<x1>-?\\d+),(?<y1>-?\\d+),(?<z1>-?\\d+);"
+          + "(?<x2>-?\\d+),(?<y2>-?\\d+),(?<z2>-?\\d+);"
+          + "(?<policy>\\w+)");
+    
+    private final String name;
+    private final int dimension;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final Policy policy;
+    
+    Region(String name, int dimension, BlockPos a, BlockPos b, Policy policy) {
+        this.name = name;
+        this.dimension = dimension;
+        this.minX = Math.min(a.getX(), b.getX());
+        this.minY = Math.min(a.getY(), b.getY());
+        this.minZ = Math.min(a.getZ(), b.getZ());
+        this.maxX = Math.max(a.getX(), b.getX());
+        this.maxY = Math.max(a.getY(), b.getY());
+        this.maxZ = Math.max(a.getZ(), b.getZ());
+        this.policy = policy;
+    }
+    
+    static Region parse(String s) {
+        Matcher m = FORMAT.matcher(s);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Invalid region string: " + s);
+        }
+        return new Region(m.group("name"), Integer.parseInt(m.group("dim")),
+                new BlockPos(Integer.parseInt(m.group("x1")), Integer.parseInt(m.group("y1")), Integer.parseInt(m.group("z1"))),
+                new BlockPos(Integer.parseInt(m.group("x2")), Integer.parseInt(m.group("y2")), Integer.parseInt(m.group("z2"))),
+                parsePolicy(m.group("policy")));
+    }
+    
+    static Policy parsePolicy(String s) {
+        try {
+            return Policy.valueOf(s.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid region policy: " + s);
+        }
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    int getDimension() {
+        return dimension;
+    }
+    
+    Policy getPolicy() {
+        return policy;
+    }
+    
+    int getMinChunkX() {
+        return minX >> 4;
+    }
+    
+    int getMinChunkZ() {
+        return minZ >> 4;
+    }
+    
+    int getMaxChunkX() {
+        return maxX >> 4;
+    }
+    
+    int getMaxChunkZ() {
+        return maxZ >> 4;
+    }
+    
+    long getVolume() {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+    }
+    
+    boolean contains(BlockPos pos) {
+        return pos.getX() >= minX && pos.getX() <= maxX
+            && pos.getY() >= minY && pos.getY() <= maxY
+            && pos.getZ() >= minZ && pos.getZ() <= maxZ;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, dimension, minX, minY, minZ, maxX, maxY, maxZ, policy);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Region other = (Region) obj;
+        return name.equals(other.name) && dimension == other.dimension 
+                && minX == other.minX && minY == other.minY && minZ == other.minZ
+                && maxX == other.maxX && maxY == other.maxY && maxZ == other.maxZ
+                && policy == other.policy;
+    }
+    
+    @Override
+    public String toString() {
+        return name + ";" + dimension + ";" + minX + "," + minY + "," + minZ + ";" + maxX + "," + maxY + "," + maxZ + ";" + policy;
+    }
+}
@@ -0,0 +1,91 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Finds the region covering a position with one hash lookup on its chunk. Regions spanning too many chunks to be worth
+ * indexing are kept in a short per-dimension list instead. Where regions overlap, the smallest one wins.
+ */
+final class RegionIndex {
+    
+    private static final int MAX_INDEXED_CHUNKS = 1024;
+    
+    private static final Region[] NONE = new Region[0];
+    
+    private final Int2ObjectMap<Long2ObjectMap<Region[]>> chunks = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<Region[]> large = new Int2ObjectOpenHashMap<>();
+    
+    RegionIndex(Collection<Region> regions) {
+        List<Region> sorted = new ArrayList<>(regions);
+        sorted.sort(Comparator.comparingLong(Region::getVolume));
+        
+        Int2ObjectMap<Long2ObjectMap<List<Region>>> chunkLists = new Int2ObjectOpenHashMap<>();
+        Int2ObjectMap<List<Region>> largeLists = new Int2ObjectOpenHashMap<>();
+        for (Region region : sorted) {
+            long chunkCount = (long) (region.getMaxChunkX() - region.getMinChunkX() + 1) * (region.getMaxChunkZ() - region.getMinChunkZ() + 1);
+            if (chunkCount > MAX_INDEXED_CHUNKS) {
+                largeLists.computeIfAbsent(region.getDimension(), d -> new ArrayList<>()).add(region);
+                continue;
+            }
+            Long2ObjectMap<List<Region>> dim = chunkLists.computeIfAbsent(region.getDimension(), d -> new Long2ObjectOpenHashMap<>());
+            for (int x = region.getMinChunkX(); x <= region.getMaxChunkX(); x++) {
+                for (int z = region.getMinChunkZ(); z <= region.getMaxChunkZ(); z++) {
+                    dim.computeIfAbsent(ChunkPos.asLong(x, z), c -> new ArrayList<>()).add(region);
+                }
+            }
+        }
+        
+        chunkLists.int2ObjectEntrySet().forEach(e -> {
+            Long2ObjectMap<Region[]> dim = new Long2ObjectOpenHashMap<>(e.getValue().size());
+            e.getValue().long2ObjectEntrySet().forEach(c -> dim.put(c.getLongKey(), c.getValue().toArray(NONE)));
+            chunks.put(e.getIntKey(), dim);
+        });
+        largeLists.int2ObjectEntrySet().forEach(e -> large.put(e.getIntKey(), e.getValue().toArray(NONE)));
+    }
+    
+    boolean isEmpty() {
+        return chunks.isEmpty() && large.isEmpty();
+    }
+    
+    @Nullable
+    Region get(int dimension, BlockPos pos) {
+        Region ret = null;
+        Long2ObjectMap<Region[]> dim = chunks.get(dimension);
+        if (dim != null) {
+            Region[] bucket = dim.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+            if (bucket != null) {
+                for (Region region : bucket) {
+                    if (region.contains(pos)) {
+                        ret = region;
+                        break;
+                    }
+                }
+            }
+        }
+        Region[] regions = large.get(dimension);
+        if (regions != null) {
+            for (Region region : regions) {
+                if (ret != null && region.getVolume() >= ret.getVolume()) {
+                    break;
+                }
+                if (region.contains(pos)) {
+                    ret = region;
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,105 @@
+package com.minecampkids.protect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Buckets whitelist rules by the shape of their block name, so a lookup only tests the rules that can possibly match:
+ * {@code domain:path}, {@code *:path}, {@code domain:*} and {@code *:*}. Partial wildcards such as {@code *:*stairs*} are
+ * matched against every block name once, up front, and filed under each name they match. Tags are flattened into their
+ * patterns, and ore dictionary entries into the states of their blocks.
+ */
+class RuleIndex {
+    
+    private final Map<ResourceLocation, List<BlockPredicate>> exact = new HashMap<>();
+    private final Map<String, List<BlockPredicate>> anyDomain = new HashMap<>();
+    private final Map<String, List<BlockPredicate>> anyPath = new HashMap<>();
+    private final List<BlockPredicate> any = new ArrayList<>();
+    private final Set<IBlockState> oreStates = Sets.newIdentityHashSet();
+    
+    RuleIndex(Collection<? extends BlockPredicate> rules, Iterable<Block> blocks) {
+        List<BlockPredicate> globs = new ArrayList<>();
+        for (BlockPredicate rule : rules) {
+            add(rule, globs);
+        }
+        if (!globs.isEmpty()) {
+            for (Block block : blocks) {
+                ResourceLocation name = block.getRegistryName();
+                if (name == null) {
+                    continue;
+                }
+                for (BlockPredicate rule : globs) {
+                    if (rule.testName(name)) {
+                        exact.computeIfAbsent(name, k -> new ArrayList<>()).add(rule);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void add(BlockPredicate rule, List<BlockPredicate> globs) {
+        if (rule instanceof EntityPredicate) {
+            return; // Never matches a block
+        } else if (rule instanceof TagPredicate) {
+            TagPredicate tag = (TagPredicate) rule;
+            if (tag.isOre()) {
+                oreStates.addAll(tag.getOreStates());
+            } else {
+                for (BlockPredicate member : tag.getMembers()) {
+                    add(member, globs);
+                }
+            }
+            return;
+        } else if (rule.isGlob()) {
+            globs.add(rule);
+            return;
+        }
+        boolean wildDomain = rule.getDomain().equals(BlockPredicate.WILDCARD);
+        boolean wildPath = rule.getPath().equals(BlockPredicate.WILDCARD);
+        if (wildDomain && wildPath) {
+            any.add(rule);
+        } else if (wildDomain) {
+            anyDomain.computeIfAbsent(rule.getPath(), k -> new ArrayList<>()).add(rule);
+        } else if (wildPath) {
+            anyPath.computeIfAbsent(rule.getDomain(), k -> new ArrayList<>()).add(rule);
+        } else {
+            exact.computeIfAbsent(new ResourceLocation(rule.getDomain(), rule.getPath()), k -> new ArrayList<>()).add(rule);
+        }
+    }
+    
+    boolean test(IBlockState state) {
+        if (oreStates.contains(state)) {
+            return true;
+        }
+        ResourceLocation name = state.getBlock().getRegistryName();
+        if (name == null) {
+            return false;
+        }
+        return anyMatch(exact.get(name), state)
+                || anyMatch(anyDomain.get(name.getResourcePath()), state)
+                || anyMatch(anyPath.get(name.getResourceDomain()), state)
+                || anyMatch(any, state);
+    }
+    
+    private static boolean anyMatch(List<BlockPredicate> bucket, IBlockState state) {
+        if (bucket == null) {
+            return false;
+        }
+        for (BlockPredicate rule : bucket) {
+            if (rule.testProperties(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package com.minecampkids.protect;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A place several servers publish whitelist versions to and read them from. Versions count up from 1, each holding the
+ * whole whitelist as {@link WhitelistSnapshot#toLines()}. Implementations must be safe to use from several processes
+ * at once.
+ */
+interface RuleStore {
+
+    /**
+     * @return The latest published version, or 0 if nothing has been published. Cheap enough to call every few seconds.
+     */
+    long getHead() throws IOException;
+
+    List<String> read(long version) throws IOException;
+
+    /**
+     * Publishes a new version, unless another server published since {@code parent}.
+     *
+     * @return The new version, or 0 if {@code parent} is no longer the head.
+     */
+    long publish(long parent, List<String> lines) throws IOException;
+}
@@ -0,0 +1,76 @@
+package com.minecampkids.protect;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link RuleStore} in a folder every server can reach, such as a network share. Each version is a file named after
+ * its number, and {@code HEAD} holds the latest number. Files are written under another name and moved into place, so
+ * readers never see half a file. Publishing holds a lock on {@code lock}, so only one server can publish at a time.
+ */
+class SharedDirectoryStore implements RuleStore {
+
+    // Older versions are deleted, keeping enough to see what recently changed
+    private static final int KEEP_VERSIONS = 32;
+
+    private final Path dir;
+
+    SharedDirectoryStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    private Path getVersionFile(long version) {
+        return dir.resolve(String.format("%08d.txt", version));
+    }
+
+    @Override
+    public long getHead() throws IOException {
+        List<String> head;
+        try {
+            head = Files.readAllLines(dir.resolve("HEAD"), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        try {
+            return head.isEmpty() ? 0 : Long.parseLong(head.get(0).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid HEAD in " + dir, e);
+        }
+    }
+
+    @Override
+    public List<String> read(long version) throws IOException {
+        return Files.readAllLines(getVersionFile(version), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long publish(long parent, List<String> lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            if (getHead() != parent) {
+                return 0;
+            }
+            long version = parent + 1;
+            write(getVersionFile(version), lines);
+            write(dir.resolve("HEAD"), Collections.singletonList(Long.toString(version)));
+            Files.deleteIfExists(getVersionFile(version - KEEP_VERSIONS));
+            return version;
+        }
+    }
+
+    private void write(Path file, List<String> lines) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,63 @@
+package com.minecampkids.protect;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import net.minecraft.block.properties.IProperty;
+import net.minecraft.block.state.IBlockState;
+
+class StatePredicate extends BlockPredicate {
+    
+    private final Map<String, String> props;
+    
+    public StatePredicate(String domain, String path, Map<String, String> props) {
+        super(domain, path);
+        this.props = new TreeMap<>(props); // Sorted, so toString is canonical
+    }
+    
+    // No per-state cache, this is only reached while compiling the whitelist or for states it could not flatten,
+    // and a shared mutable cache would not be safe to read from both the client and server threads
+    @Override
+    boolean testProperties(IBlockState t) {
+        for (IProperty<?> prop : t.getPropertyKeys()) {
+            String value = props.get(prop.getName());
+            if (value != null && !value.equals(getValueName(t, prop))) { // ignore properties not in the map
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static <T extends Comparable<T>> String getValueName(IBlockState state, IProperty<T> prop) {
+        return prop.getName(state.getValue(prop));
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + Objects.hash(props);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        StatePredicate other = (StatePredicate) obj;
+        return Objects.equals(props, other.props);
+    }
+    
+    @Override
+    public String toString() {
+        return super.toString() + "[" + props.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(",")) + "]";
+    }
+}
@@ -0,0 +1,91 @@
+package com.minecampkids.protect;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.item.ItemBlock;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.oredict.OreDictionary;
+
+/**
+ * Matches a named set of blocks: {@code #ore:logWood} for the blocks of an ore dictionary entry, {@code #tag:name} for a
+ * {@link BlockTag} from the config. Both are expanded when the whitelist is compiled, so checks never look them up.
+ */
+class TagPredicate extends BlockPredicate {
+
+    static final String ORE = "#ore";
+    static final String TAG = "#tag";
+
+    // For #tag, the patterns of the tag as of the snapshot this was bound to
+    private final ImmutableSet<BlockPredicate> members;
+
+    // For #ore, resolved on first use. The dictionary is complete long before the first check.
+    private volatile Set<IBlockState> oreStates;
+
+    TagPredicate(String kind, String name) {
+        this(kind, name, ImmutableSet.of());
+    }
+
+    private TagPredicate(String kind, String name, Collection<? extends BlockPredicate> members) {
+        super(kind, name);
+        this.members = ImmutableSet.copyOf(members);
+    }
+
+    boolean isOre() {
+        return getDomain().equals(ORE);
+    }
+
+    String getName() {
+        return getPath();
+    }
+
+    ImmutableSet<BlockPredicate> getMembers() {
+        return members;
+    }
+
+    /**
+     * A copy of this tag that matches the given patterns. Tags compare equal regardless of their members.
+     */
+    TagPredicate withMembers(Collection<? extends BlockPredicate> members) {
+        return new TagPredicate(getDomain(), getPath(), members);
+    }
+
+    Set<IBlockState> getOreStates() {
+        Set<IBlockState> ret = oreStates;
+        if (ret == null) {
+            ret = Sets.newIdentityHashSet();
+            for (ItemStack stack : OreDictionary.getOres(getName(), false)) {
+                if (!(stack.getItem() instanceof ItemBlock)) {
+                    continue;
+                }
+                Block block = ((ItemBlock) stack.getItem()).getBlock();
+                for (IBlockState state : block.getBlockState().getValidStates()) {
+                    // Compare against the dropped meta, so every rotation of a log matches its item
+                    if (stack.getMetadata() == OreDictionary.WILDCARD_VALUE || block.damageDropped(state) == stack.getMetadata()) {
+                        ret.add(state);
+                    }
+                }
+            }
+            oreStates = ret;
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean test(IBlockState t) {
+        if (isOre()) {
+            return getOreStates().contains(t);
+        }
+        for (BlockPredicate member : members) {
+            if (member.test(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
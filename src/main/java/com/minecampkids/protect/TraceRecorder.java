@@ -0,0 +1,232 @@
+package com.minecampkids.protect;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.FakePlayer;
+
+/**
+ * Records every player check to a file, for replaying offline against a different config or matcher. Checks are queued
+ * and written by a background thread, and dropped rather than waited for if the queue fills up.
+ * <p>
+ * The file is a header ({@value #MAGIC}, format version) followed by records, each starting with a tag byte:
+ * <ul>
+ * <li>{@link #STATE}: varint ID, UTF state string as in {@link IBlockState#toString()}</li>
+ * <li>{@link #PLAYER}: varint ID, UUID as two longs</li>
+ * <li>{@link #CHECK}: event ordinal byte, varint state ID, varint player ID, flags byte, zigzag varint dimension,
+ * {@link BlockPos#toLong()}, varint nanoseconds</li>
+ * </ul>
+ * Each state and player is defined once, before the first check that refers to it.
+ */
+class TraceRecorder {
+
+    private static final Logger log = LogManager.getLogger(MCKidsProtect.MODID);
+
+    static final int MAGIC = 0x4D434B54; // MCKT
+    static final int FORMAT = 1;
+
+    static final int STATE = 0;
+    static final int PLAYER = 1;
+    static final int CHECK = 2;
+
+    static final int FLAG_ALLOWED = 1;
+    static final int FLAG_CREATIVE = 2;
+    static final int FLAG_FAKE = 4;
+
+    private static final int QUEUE_SIZE = 1 << 16;
+
+    private static final class Check {
+
+        final ProtectionStats.Event event;
+        final IBlockState state;
+        final UUID player;
+        final int flags;
+        final int dimension;
+        final long pos;
+        final long nanos;
+
+        Check(ProtectionStats.Event event, IBlockState state, UUID player, int flags, int dimension, long pos, long nanos) {
+            this.event = event;
+            this.state = state;
+            this.player = player;
+            this.flags = flags;
+            this.dimension = dimension;
+            this.pos = pos;
+            this.nanos = nanos;
+        }
+    }
+
+    private final BlockingQueue<Check> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean recording;
+    @Nullable
+    private Thread writer;
+
+    /**
+     * Call before a check.
+     *
+     * @return The start time if recording, otherwise 0.
+     */
+    long startTimer() {
+        return recording ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Call after a check with the value of {@link #startTimer()}. Checks made on the client are ignored.
+     */
+    void record(ProtectionStats.Event event, EntityPlayer player, BlockPos pos, IBlockState state, boolean allowed, long start) {
+        if (start == 0 || player.world.isRemote) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int flags = (allowed ? FLAG_ALLOWED : 0)
+                | (player.capabilities.isCreativeMode ? FLAG_CREATIVE : 0)
+                | (player instanceof FakePlayer ? FLAG_FAKE : 0);
+        if (!queue.offer(new Check(event, state, player.getUniqueID(), flags, player.world.provider.getDimension(), pos.toLong(), nanos))) {
+            dropped.increment();
+        }
+    }
+
+    boolean isRecording() {
+        return recording;
+    }
+
+    synchronized void startRecording(File file) throws IOException {
+        if (writer != null) {
+            if (recording) {
+                throw new IllegalStateException("Already recording");
+            }
+            // The last writer failed and stopped by itself
+            stopRecording();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        queue.clear();
+        dropped.reset();
+        recording = true;
+        writer = new Thread(() -> write(out, file), "MCKidsProtect Trace Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops recording and waits for the queued checks to be written.
+     *
+     * @return The number of checks that were dropped because the writer fell behind.
+     */
+    synchronized long stopRecording() {
+        if (writer == null) {
+            return 0;
+        }
+        recording = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        return dropped.sum();
+    }
+
+    private void write(DataOutputStream out, File file) {
+        Reference2IntMap<IBlockState> states = new Reference2IntOpenHashMap<>();
+        Object2IntMap<UUID> players = new Object2IntOpenHashMap<>();
+        states.defaultReturnValue(-1);
+        players.defaultReturnValue(-1);
+        try (DataOutputStream o = out) {
+            while (recording || !queue.isEmpty()) {
+                Check check = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (check == null) {
+                    continue;
+                }
+                int state = states.getInt(check.state);
+                if (state < 0) {
+                    states.put(check.state, state = states.size());
+                    o.writeByte(STATE);
+                    writeVarInt(o, state);
+                    o.writeUTF(check.state.toString());
+                }
+                int player = players.getInt(check.player);
+                if (player < 0) {
+                    players.put(check.player, player = players.size());
+                    o.writeByte(PLAYER);
+                    writeVarInt(o, player);
+                    o.writeLong(check.player.getMostSignificantBits());
+                    o.writeLong(check.player.getLeastSignificantBits());
+                }
+                o.writeByte(CHECK);
+                o.writeByte(check.event.ordinal());
+                writeVarInt(o, state);
+                writeVarInt(o, player);
+                o.writeByte(check.flags);
+                writeVarInt(o, (check.dimension << 1) ^ (check.dimension >> 31));
+                o.writeLong(check.pos);
+                writeVarLong(o, check.nanos);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write trace to {}, recording stopped", file, e);
+            recording = false;
+        } catch (InterruptedException e) {
+            recording = false;
+        } finally {
+            queue.clear();
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long ret = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            ret |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return ret;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,424 @@
+package com.minecampkids.protect;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * An immutable view of the whitelist. {@link ProtectionConfig} publishes a new snapshot for every change, so readers on
+ * any thread can test against it without locking.
+ */
+final class WhitelistSnapshot {
+    
+    /**
+     * The rules one player is checked against: the global whitelist, plus their group's patterns if they are in one.
+     * Every member of a group shares the same instance, so each group is compiled once.
+     */
+    static final class RuleSet {
+        
+        private final ImmutableSet<BlockPredicate> rules;
+        private final boolean bypass;
+        
+        // Built lazily, as the block registry is not populated yet when the config is first read.
+        // Racing threads may both build it, which is harmless as the result is the same.
+        private volatile CompiledWhitelist compiled;
+        
+        private final ImmutableList<EntityPredicate> entityRules;
+        // Filled in as entity classes are first checked. The rules never change, so neither do the decisions.
+        private final Map<Class<? extends Entity>, Boolean> entityDecisions = new ConcurrentHashMap<>();
+        
+        RuleSet(Collection<? extends BlockPredicate> rules, boolean bypass) {
+            this.rules = ImmutableSet.copyOf(rules);
+            this.bypass = bypass;
+            ImmutableList.Builder<EntityPredicate> entityRules = ImmutableList.builder();
+            for (BlockPredicate rule : this.rules) {
+                if (rule instanceof EntityPredicate) {
+                    entityRules.add((EntityPredicate) rule);
+                } else if (rule instanceof TagPredicate) {
+                    ((TagPredicate) rule).getMembers().stream().filter(EntityPredicate.class::isInstance).map(EntityPredicate.class::cast).forEach(entityRules::add);
+                }
+            }
+            this.entityRules = entityRules.build();
+        }
+        
+        ImmutableSet<BlockPredicate> getRules() {
+            return rules;
+        }
+        
+        boolean isBypass() {
+            return bypass;
+        }
+        
+        boolean test(IBlockState state) {
+            return bypass || getCompiled().test(state);
+        }
+        
+        /**
+         * @return The rules that match the state, ignoring bypass. Slow, for explaining a single decision.
+         */
+        List<BlockPredicate> getMatchingRules(IBlockState state) {
+            return rules.stream().filter(r -> r.test(state)).collect(Collectors.toList());
+        }
+        
+        boolean testEntity(Class<? extends Entity> type) {
+            if (bypass) {
+                return true;
+            }
+            Boolean ret = entityDecisions.get(type);
+            if (ret == null) {
+                ret = matchesEntity(type);
+                entityDecisions.put(type, ret);
+            }
+            return ret;
+        }
+        
+        private boolean matchesEntity(Class<? extends Entity> type) {
+            ResourceLocation name = EntityList.getKey(type);
+            if (name == null) {
+                return false;
+            }
+            for (EntityPredicate rule : entityRules) {
+                if (rule.testName(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        void compile() {
+            getCompiled();
+        }
+        
+        private CompiledWhitelist getCompiled() {
+            CompiledWhitelist ret = compiled;
+            if (ret == null) {
+                compiled = ret = CompiledWhitelist.compile(rules);
+            }
+            return ret;
+        }
+    }
+    
+    private final long version;
+    private final ImmutableSet<BlockPredicate> rules;
+    private final ImmutableSet<Region> regions;
+    private final RegionIndex regionIndex;
+    private final ImmutableMap<String, PlayerGroup> groups;
+    private final ImmutableMap<String, BlockTag> tags;
+    private final RuleSet globalRules;
+    private final ImmutableMap<String, RuleSet> groupRules;
+    private final ImmutableMap<UUID, RuleSet> memberRules;
+    private final boolean enabled;
+    private final long contentHash;
+    
+    WhitelistSnapshot(long version, Collection<? extends BlockPredicate> rules, Collection<Region> regions, Collection<PlayerGroup> groups, Collection<BlockTag> tags, boolean enabled) {
+        this.version = version;
+        ImmutableMap.Builder<String, BlockTag> tagMap = ImmutableMap.builder();
+        for (BlockTag tag : tags) {
+            tagMap.put(tag.getName(), tag);
+        }
+        this.tags = tagMap.build();
+        this.rules = bindTags(rules);
+        this.regions = ImmutableSet.copyOf(regions);
+        this.regionIndex = new RegionIndex(this.regions);
+        this.globalRules = new RuleSet(this.rules, false);
+        this.groups = indexGroups(groups);
+        this.groupRules = buildGroupRules(this.groups.values(), null);
+        this.memberRules = buildMemberRules(this.groups.values(), this.groupRules);
+        this.enabled = enabled;
+        this.contentHash = computeContentHash();
+    }
+    
+    /**
+     * Copies everything that depends on the patterns and tags, so the compiled rule sets are kept.
+     */
+    private WhitelistSnapshot(WhitelistSnapshot copy, long version, ImmutableSet<Region> regions, RegionIndex regionIndex,
+            ImmutableMap<String, PlayerGroup> groups, ImmutableMap<String, RuleSet> groupRules, ImmutableMap<UUID, RuleSet> memberRules,
+            boolean enabled) {
+        this.version = version;
+        this.rules = copy.rules;
+        this.tags = copy.tags;
+        this.globalRules = copy.globalRules;
+        this.regions = regions;
+        this.regionIndex = regionIndex;
+        this.groups = groups;
+        this.groupRules = groupRules;
+        this.memberRules = memberRules;
+        this.enabled = enabled;
+        this.contentHash = regions == copy.regions && groups == copy.groups ? copy.contentHash : computeContentHash();
+    }
+    
+    private static ImmutableMap<String, PlayerGroup> indexGroups(Collection<PlayerGroup> groups) {
+        ImmutableMap.Builder<String, PlayerGroup> ret = ImmutableMap.builder();
+        for (PlayerGroup group : groups) {
+            ret.put(group.getName(), group);
+        }
+        return ret.build();
+    }
+    
+    /**
+     * Gives each group one rule set of the global patterns plus its own. A group whose patterns and bypass flag are the
+     * same as in {@code previous} keeps its rule set, compiled tables included.
+     */
+    private ImmutableMap<String, RuleSet> buildGroupRules(Collection<PlayerGroup> groups, @Nullable WhitelistSnapshot previous) {
+        ImmutableMap.Builder<String, RuleSet> ret = ImmutableMap.builder();
+        for (PlayerGroup group : groups) {
+            PlayerGroup old = previous == null ? null : previous.groups.get(group.getName());
+            if (old != null && old.isBypass() == group.isBypass() && old.getRules().equals(group.getRules())) {
+                ret.put(group.getName(), previous.groupRules.get(group.getName()));
+            } else {
+                ret.put(group.getName(), new RuleSet(ImmutableSet.<BlockPredicate>builder().addAll(rules).addAll(bindTags(group.getRules())).build(), group.isBypass()));
+            }
+        }
+        return ret.build();
+    }
+    
+    /**
+     * Points each member at the rule set of their group, shared by all of its members.
+     */
+    private static ImmutableMap<UUID, RuleSet> buildMemberRules(Collection<PlayerGroup> groups, Map<String, RuleSet> groupRules) {
+        Map<UUID, RuleSet> ret = new HashMap<>();
+        for (PlayerGroup group : groups) {
+            RuleSet ruleSet = groupRules.get(group.getName());
+            for (UUID member : group.getMembers()) {
+                ret.put(member, ruleSet);
+            }
+        }
+        return ImmutableMap.copyOf(ret);
+    }
+    
+    private long computeContentHash() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hash(hasher, getPatterns());
+        hash(hasher, getRegionStrings());
+        hash(hasher, getGroupStrings());
+        hash(hasher, getTagStrings());
+        return hasher.hash().asLong();
+    }
+    
+    /**
+     * Gives every {@code #tag} pattern the current patterns of its tag. Unknown tags match nothing.
+     */
+    private ImmutableSet<BlockPredicate> bindTags(Collection<? extends BlockPredicate> rules) {
+        ImmutableSet.Builder<BlockPredicate> ret = ImmutableSet.builder();
+        for (BlockPredicate rule : rules) {
+            if (rule instanceof TagPredicate && !((TagPredicate) rule).isOre()) {
+                BlockTag tag = tags.get(((TagPredicate) rule).getName());
+                ret.add(((TagPredicate) rule).withMembers(tag == null ? ImmutableSet.of() : tag.getRules()));
+            } else {
+                ret.add(rule);
+            }
+        }
+        return ret.build();
+    }
+    
+    private static void hash(Hasher hasher, List<String> strings) {
+        strings.sort(null);
+        for (String s : strings) {
+            hasher.putString(s, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        hasher.putByte((byte) 1);
+    }
+    
+    long getVersion() {
+        return version;
+    }
+    
+    ImmutableSet<BlockPredicate> getRules() {
+        return rules;
+    }
+    
+    ImmutableSet<Region> getRegions() {
+        return regions;
+    }
+    
+    ImmutableMap<String, PlayerGroup> getGroups() {
+        return groups;
+    }
+    
+    ImmutableMap<String, BlockTag> getTags() {
+        return tags;
+    }
+    
+    boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * A hash of the rules, regions and groups, independent of their order and of the version, so clients can tell
+     * whether they already hold them.
+     */
+    long getContentHash() {
+        return contentHash;
+    }
+    
+    List<String> getPatterns() {
+        return rules.stream().map(Object::toString).collect(Collectors.toList());
+    }
+    
+    List<String> getRegionStrings() {
+        return regions.stream().map(Object::toString).collect(Collectors.toList());
+    }
+    
+    List<String> getGroupStrings() {
+        return groups.values().stream().map(Object::toString).collect(Collectors.toList());
+    }
+    
+    List<String> getTagStrings() {
+        return tags.values().stream().map(Object::toString).collect(Collectors.toList());
+    }
+    
+    @Nullable
+    Region getRegion(int dimension, BlockPos pos) {
+        return regionIndex.isEmpty() ? null : regionIndex.get(dimension, pos);
+    }
+    
+    RuleSet getRuleSet(@Nullable UUID player) {
+        RuleSet ret = player == null ? null : memberRules.get(player);
+        return ret == null ? globalRules : ret;
+    }
+    
+    @Nullable
+    PlayerGroup getGroup(UUID player) {
+        for (PlayerGroup group : groups.values()) {
+            if (group.getMembers().contains(player)) {
+                return group;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Every state the pattern matches, grouped by block in registry order. A pattern naming one block only looks at that
+     * block's states, anything else is read from a table compiled for it alone. {@code #tag} patterns use the tags of
+     * this snapshot. Must be called once the registry is populated.
+     */
+    List<IBlockState> getMatchingStates(BlockPredicate pattern) {
+        if (!(pattern instanceof TagPredicate) && !pattern.isGlob()
+                && !pattern.getDomain().equals(BlockPredicate.WILDCARD) && !pattern.getPath().equals(BlockPredicate.WILDCARD)) {
+            ResourceLocation name = new ResourceLocation(pattern.getDomain(), pattern.getPath());
+            if (!Block.REGISTRY.containsKey(name)) {
+                return Collections.emptyList();
+            }
+            List<IBlockState> ret = new ArrayList<>();
+            for (IBlockState state : Block.REGISTRY.getObject(name).getBlockState().getValidStates()) {
+                if (pattern.test(state)) {
+                    ret.add(state);
+                }
+            }
+            return ret;
+        }
+        return CompiledWhitelist.compile(bindTags(Collections.singleton(pattern))).getAllowedStates();
+    }
+    
+    /**
+     * Tests a state regardless of where it is, for example a block about to be placed from an item.
+     */
+    boolean test(@Nullable UUID player, IBlockState state) {
+        return !enabled || getRuleSet(player).test(state);
+    }
+    
+    boolean test(@Nullable UUID player, int dimension, BlockPos pos, IBlockState state) {
+        if (!enabled) {
+            return true;
+        }
+        RuleSet ruleSet = getRuleSet(player);
+        if (ruleSet.isBypass()) {
+            return true;
+        }
+        Region region = getRegion(dimension, pos);
+        if (region != null) {
+            return region.getPolicy() == Region.Policy.ALLOW;
+        }
+        return ruleSet.test(state);
+    }
+    
+    /**
+     * Everything in this snapshot as {@code key=value} lines, which {@link ProtectionConfig#parseLines(List)} reads back.
+     */
+    List<String> toLines() {
+        List<String> ret = new ArrayList<>();
+        ret.add("enabled=" + enabled);
+        getPatterns().stream().sorted().forEach(s -> ret.add("whitelist=" + s));
+        getRegionStrings().forEach(s -> ret.add("region=" + s));
+        getGroupStrings().forEach(s -> ret.add("group=" + s));
+        getTagStrings().forEach(s -> ret.add("tag=" + s));
+        return ret;
+    }
+    
+    boolean test(@Nullable UUID player, int dimension, BlockPos pos, Class<? extends Entity> type) {
+        if (!enabled) {
+            return true;
+        }
+        RuleSet ruleSet = getRuleSet(player);
+        if (ruleSet.isBypass()) {
+            return true;
+        }
+        Region region = getRegion(dimension, pos);
+        if (region != null) {
+            return region.getPolicy() == Region.Policy.ALLOW;
+        }
+        return ruleSet.testEntity(type);
+    }
+    
+    /**
+     * Builds the compiled tables of every rule set now, rather than on first use.
+     */
+    void compile() {
+        globalRules.compile();
+        for (RuleSet ruleSet : groupRules.values()) {
+            ruleSet.compile();
+        }
+    }
+    
+    /**
+     * The same snapshot under a different version. Shares everything, including compiled tables.
+     */
+    WhitelistSnapshot withVersion(long version) {
+        return new WhitelistSnapshot(this, version, regions, regionIndex, groups, groupRules, memberRules, enabled);
+    }
+    
+    WhitelistSnapshot withRules(Collection<? extends BlockPredicate> rules) {
+        return new WhitelistSnapshot(version + 1, rules, regions, groups.values(), tags.values(), enabled);
+    }
+    
+    WhitelistSnapshot withRegions(Collection<Region> regions) {
+        ImmutableSet<Region> set = ImmutableSet.copyOf(regions);
+        return new WhitelistSnapshot(this, version + 1, set, new RegionIndex(set), groups, groupRules, memberRules, enabled);
+    }
+    
+    WhitelistSnapshot withGroups(Collection<PlayerGroup> groups) {
+        ImmutableMap<String, PlayerGroup> map = indexGroups(groups);
+        ImmutableMap<String, RuleSet> ruleMap = buildGroupRules(map.values(), this);
+        return new WhitelistSnapshot(this, version + 1, regions, regionIndex, map, ruleMap, buildMemberRules(map.values(), ruleMap), enabled);
+    }
+    
+    WhitelistSnapshot withTags(Collection<BlockTag> tags) {
+        return new WhitelistSnapshot(version + 1, rules, regions, groups.values(), tags, enabled);
+    }
+    
+    WhitelistSnapshot withEnabled(boolean enabled) {
+        return new WhitelistSnapshot(this, version + 1, regions, regionIndex, groups, groupRules, memberRules, enabled);
+    }
+}
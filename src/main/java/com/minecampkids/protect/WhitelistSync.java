@@ -0,0 +1,182 @@
+package com.minecampkids.protect;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Sets;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+/**
+ * Keeps client whitelists in step with the server's. Clients track the server version they hold and apply batched
+ * deltas on top of it, asking for the full list when they see a gap.
+ */
+class WhitelistSync {
+    
+    // A client asking more often than this waits, however many requests it sends
+    private static final long REQUEST_COOLDOWN_MS = 1000;
+    
+    // Server side, only touched on the server thread
+    @Nullable
+    private WhitelistSnapshot lastSent;
+    private final Set<EntityPlayerMP> pendingRequests = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Map<EntityPlayerMP, Long> lastAnswered = new WeakHashMap<>();
+    
+    // Client side, only touched on the client thread
+    private volatile long remoteVersion = -1;
+    // Set from asking for a full snapshot until it arrives, deltas before then are useless
+    private boolean resyncPending;
+    private long cachedHash;
+    @Nullable
+    private List<String> cachedPatterns, cachedRegions, cachedGroups, cachedTags;
+    
+    private static ProtectionConfig getConfig() {
+        return MCKidsProtect.instance.getConfig();
+    }
+    
+    void sendSnapshot(EntityPlayerMP player, boolean full) {
+        WhitelistSnapshot snapshot = getConfig().getSnapshot();
+        MCKidsProtect.network.sendTo(createSnapshot(snapshot, full), player);
+    }
+    
+    private static MessageInitialWhitelist createSnapshot(WhitelistSnapshot snapshot, boolean full) {
+        return new MessageInitialWhitelist(snapshot.getVersion(), snapshot.getContentHash(), snapshot.isEnabled(), 
+                full ? snapshot.getPatterns() : null, full ? snapshot.getRegionStrings() : null, full ? snapshot.getGroupStrings() : null, full ? snapshot.getTagStrings() : null);
+    }
+    
+    /**
+     * Called on the server thread for a {@link MessageWhitelistRequest}. Repeated requests from one player collapse into
+     * a single snapshot, sent by {@link #flush(MinecraftServer)} at most once per {@link #REQUEST_COOLDOWN_MS}.
+     */
+    void queueSnapshotRequest(EntityPlayerMP player) {
+        pendingRequests.add(player);
+    }
+    
+    /**
+     * Called at the end of every server tick. Sends everything that changed during the tick to all clients as one message,
+     * then answers queued snapshot requests.
+     */
+    void flush(MinecraftServer server) {
+        flushUpdate(server);
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Iterator<EntityPlayerMP> it = pendingRequests.iterator(); it.hasNext();) {
+            EntityPlayerMP player = it.next();
+            Long last = lastAnswered.get(player);
+            if (player.hasDisconnected()) {
+                it.remove();
+            } else if (last == null || now - last >= REQUEST_COOLDOWN_MS) {
+                it.remove();
+                lastAnswered.put(player, now);
+                sendSnapshot(player, true);
+            }
+        }
+    }
+    
+    private void flushUpdate(MinecraftServer server) {
+        WhitelistSnapshot current = getConfig().getSnapshot();
+        WhitelistSnapshot last = lastSent;
+        if (last == current) {
+            return;
+        }
+        lastSent = current;
+        if (last == null || last.getVersion() == current.getVersion()) {
+            return; // Players joining from now on are told about the current version
+        }
+        IMessage message = createUpdate(last, current);
+        for (EntityPlayerMP player : server.getPlayerList().getPlayers()) {
+            if (isRemote(player)) {
+                MCKidsProtect.network.sendTo(message, player);
+            }
+        }
+    }
+    
+    /**
+     * Whether the player is on a different machine. The host of an integrated server shares its config with the server.
+     */
+    static boolean isRemote(EntityPlayerMP player) {
+        return !player.connection.getNetworkManager().isLocalChannel();
+    }
+    
+    static IMessage createUpdate(WhitelistSnapshot last, WhitelistSnapshot current) {
+        if (!last.getRegions().equals(current.getRegions()) || !last.getGroups().equals(current.getGroups()) || !last.getTags().equals(current.getTags())) {
+            return createSnapshot(current, true); // Regions, groups and tags change rarely, deltas only carry patterns
+        }
+        Set<BlockPredicate> added = Sets.difference(current.getRules(), last.getRules());
+        Set<BlockPredicate> removed = Sets.difference(last.getRules(), current.getRules());
+        if (added.size() + removed.size() > current.getRules().size()) {
+            return createSnapshot(current, true); // e.g. after a clear, the full list is smaller
+        }
+        return new MessageWhitelist(last.getVersion(), current.getVersion(), current.isEnabled(), toStrings(added), toStrings(removed));
+    }
+    
+    private static List<String> toStrings(Set<BlockPredicate> rules) {
+        return rules.stream().map(Object::toString).collect(Collectors.toList());
+    }
+    
+    void receiveSnapshot(long version, long hash, boolean enabled, @Nullable List<String> patterns, @Nullable List<String> regions, @Nullable List<String> groups, @Nullable List<String> tags) {
+        if (patterns == null || regions == null || groups == null || tags == null) {
+            if (cachedPatterns == null || cachedRegions == null || cachedGroups == null || cachedTags == null || cachedHash != hash) {
+                requestSnapshot();
+                return;
+            }
+            patterns = cachedPatterns;
+            regions = cachedRegions;
+            groups = cachedGroups;
+            tags = cachedTags;
+        }
+        getConfig().setRemoteWhitelist(patterns, regions, groups, tags, enabled);
+        cachedPatterns = patterns;
+        cachedRegions = regions;
+        cachedGroups = groups;
+        cachedTags = tags;
+        cachedHash = hash;
+        remoteVersion = version;
+        resyncPending = false;
+    }
+    
+    void receiveUpdate(long fromVersion, long toVersion, boolean enabled, List<String> added, List<String> removed) {
+        if (resyncPending) {
+            return; // The snapshot on its way includes this
+        }
+        if (toVersion <= remoteVersion) {
+            return; // Already included in the snapshot we got on login
+        }
+        if (fromVersion != remoteVersion) {
+            requestSnapshot();
+            return;
+        }
+        ProtectionConfig config = getConfig();
+        config.updateRemoteWhitelist(added, removed, enabled);
+        cachedPatterns = config.getWhitelist();
+        cachedHash = config.getSnapshot().getContentHash();
+        remoteVersion = toVersion;
+    }
+    
+    private void requestSnapshot() {
+        remoteVersion = -1;
+        if (!resyncPending) {
+            resyncPending = true;
+            MCKidsProtect.network.sendToServer(new MessageWhitelistRequest());
+        }
+    }
+    
+    /**
+     * Called when the client leaves a server. The cached patterns are kept, so reconnecting skips the transfer.
+     */
+    void reset() {
+        remoteVersion = -1;
+        resyncPending = false;
+    }
+}
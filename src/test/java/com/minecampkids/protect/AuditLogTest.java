@@ -0,0 +1,156 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+
+public class AuditLogTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private static IBlockState stone;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setup() {
+        Bootstrap.register();
+        stone = Blocks.STONE.getDefaultState();
+    }
+
+    private static void record(AuditLog audit, UUID player, int x) {
+        audit.record(ProtectionStats.Event.BREAK, player, player == ALICE ? "Alice" : "Bob", 0, new BlockPos(x, 64, 0), stone);
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDrain() throws IOException {
+        AuditLog audit = new AuditLog();
+        File file = new File(folder.getRoot(), "audit.log");
+        record(audit, ALICE, 1);
+        record(audit, BOB, 2);
+        audit.drain(file);
+        List<String> lines = read(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(" Alice break " + stone + " at 1,64,0 in dim 0"));
+        assertTrue(lines.get(1).endsWith(" Bob break " + stone + " at 2,64,0 in dim 0"));
+
+        // Only new entries are written next time
+        record(audit, ALICE, 3);
+        audit.drain(file);
+        lines = read(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).contains(" at 3,64,0 "));
+        audit.drain(file);
+        assertEquals(3, read(file).size());
+    }
+
+    @Test
+    public void testRepeatsCollapse() throws IOException {
+        AuditLog audit = new AuditLog();
+        File file = new File(folder.getRoot(), "audit.log");
+        for (int i = 0; i < 3; i++) {
+            record(audit, ALICE, 1);
+        }
+        record(audit, BOB, 1);
+        record(audit, ALICE, 1);
+        audit.drain(file);
+        List<String> lines = read(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith(" in dim 0 (x3)"));
+        assertTrue(lines.get(1).contains(" Bob "));
+        assertTrue(lines.get(2).endsWith(" in dim 0"));
+    }
+
+    @Test
+    public void testOverwriteCountsLost() throws IOException {
+        AuditLog audit = new AuditLog();
+        File file = new File(folder.getRoot(), "audit.log");
+        for (int i = 0; i < AuditLog.CAPACITY + 10; i++) {
+            record(audit, ALICE, i);
+        }
+        audit.drain(file);
+        List<String> lines = read(file);
+        assertEquals(AuditLog.CAPACITY + 1, lines.size());
+        // The oldest ten were overwritten
+        assertTrue(lines.get(0).contains(" at 10,64,0 "));
+        assertTrue(lines.get(AuditLog.CAPACITY - 1).contains(" at " + (AuditLog.CAPACITY + 9) + ",64,0 "));
+        assertEquals("10 entries were lost because the audit log could not keep up", lines.get(AuditLog.CAPACITY));
+
+        // The count starts over once written
+        record(audit, ALICE, -1);
+        audit.drain(file);
+        lines = read(file);
+        assertEquals(AuditLog.CAPACITY + 2, lines.size());
+        assertTrue(lines.get(AuditLog.CAPACITY + 1).contains(" at -1,64,0 "));
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws IOException {
+        AuditLog audit = new AuditLog();
+        for (int i = 0; i < AuditLog.CAPACITY + 5; i++) {
+            record(audit, ALICE, i);
+        }
+        try {
+            audit.drain(folder.newFolder("audit.log"));
+            throw new AssertionError("Wrote to a folder");
+        } catch (IOException e) {}
+
+        // Nothing was marked as written, including the lost count
+        File file = new File(folder.getRoot(), "retry.log");
+        audit.drain(file);
+        List<String> lines = read(file);
+        assertEquals(AuditLog.CAPACITY + 1, lines.size());
+        assertTrue(lines.get(0).contains(" at 5,64,0 "));
+        assertEquals("5 entries were lost because the audit log could not keep up", lines.get(AuditLog.CAPACITY));
+    }
+
+    @Test
+    public void testRecent() {
+        AuditLog audit = new AuditLog();
+        for (int i = 0; i < 10; i++) {
+            record(audit, i % 2 == 0 ? ALICE : BOB, i);
+        }
+        List<AuditLog.Entry> recent = audit.getRecent(ALICE, 3);
+        assertEquals(3, recent.size());
+        assertTrue(recent.get(0).toString().contains(" at 8,64,0 "));
+        assertTrue(recent.get(2).toString().contains(" at 4,64,0 "));
+        for (AuditLog.Entry entry : recent) {
+            assertEquals(ALICE, entry.getPlayer());
+        }
+        assertTrue(audit.getRecent(UUID.randomUUID(), 10).isEmpty());
+    }
+
+    @Test
+    public void testRecentAfterOverwrite() {
+        AuditLog audit = new AuditLog();
+        for (int i = 0; i < AuditLog.CAPACITY * 2; i++) {
+            record(audit, ALICE, i);
+        }
+        List<AuditLog.Entry> recent = audit.getRecent(ALICE, Integer.MAX_VALUE);
+        assertEquals(AuditLog.CAPACITY, recent.size());
+        assertTrue(recent.get(0).toString().contains(" at " + (AuditLog.CAPACITY * 2 - 1) + ",64,0 "));
+        assertTrue(recent.get(AuditLog.CAPACITY - 1).toString().contains(" at " + AuditLog.CAPACITY + ",64,0 "));
+    }
+}
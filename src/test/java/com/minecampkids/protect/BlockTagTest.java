@@ -0,0 +1,31 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class BlockTagTest {
+
+    @Test
+    public void testParse() {
+        BlockTag tag = BlockTag.parse("wood;minecraft:log #ore:plankWood");
+        assertEquals("wood", tag.getName());
+        assertEquals(ImmutableSet.of(ProtectionConfig.getPredicate("minecraft:log"), ProtectionConfig.getPredicate("#ore:plankWood")), tag.getRules());
+        assertEquals("wood;#ore:plankWood minecraft:log", tag.toString());
+        assertEquals(tag, BlockTag.parse(tag.toString()));
+        assertTrue(BlockTag.parse("empty;").getRules().isEmpty());
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String s : new String[] { "wood", "wood;#tag:other", "wood;a:b:c", "my wood;minecraft:log" }) {
+            try {
+                BlockTag.parse(s);
+                throw new AssertionError("Parsed '" + s + "'");
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraftforge.common.config.Configuration;
+import net.minecraftforge.fml.relauncher.FMLInjectionData;
+
+/**
+ * Edits made to the config file while the server runs, as the watcher thread sees them.
+ */
+public class ConfigReloadTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ProtectionConfig config;
+
+    @BeforeClass
+    public static void setupRegistries() {
+        // Reloads compile the whitelist against the block registry
+        Bootstrap.register();
+    }
+
+    @Before
+    public void setup() throws ReflectiveOperationException {
+        // Configuration resolves its path against the game folder, which only the launcher sets
+        Field home = FMLInjectionData.class.getDeclaredField("minecraftHome");
+        home.setAccessible(true);
+        home.set(null, folder.getRoot());
+        file = new File(folder.getRoot(), "mckidsprotect.cfg");
+        config = new ProtectionConfig(file);
+    }
+
+    /**
+     * Edits the file as a person would, through a separate copy of it.
+     */
+    private Configuration edit() {
+        return new Configuration(file);
+    }
+
+    @Test
+    public void testOptionsOnly() {
+        assertTrue(config.preventInteract());
+        assertTrue(config.protectFromExplosions());
+        WhitelistSnapshot before = config.getSnapshot();
+
+        Configuration edit = edit();
+        edit.get(Configuration.CATEGORY_GENERAL, "preventInteract", true).set(false);
+        edit.get(Configuration.CATEGORY_GENERAL, "protectFromExplosions", true).set(false);
+        edit.save();
+        config.reloadFromDisk();
+        assertFalse(config.hasPendingReload());
+        // Nothing changes until the server thread applies it
+        assertTrue(config.preventInteract());
+
+        assertFalse(config.applyReload());
+        assertFalse(config.preventInteract());
+        assertFalse(config.protectFromExplosions());
+        assertSame(before, config.getSnapshot());
+    }
+
+    @Test
+    public void testWhitelistAndOptions() {
+        long version = config.getSnapshot().getVersion();
+        Configuration edit = edit();
+        edit.get(Configuration.CATEGORY_GENERAL, "whitelist", new String[0]).set(new String[] { "minecraft:stone" });
+        edit.get(Configuration.CATEGORY_GENERAL, "protectFromPistons", true).set(false);
+        edit.save();
+        config.reloadFromDisk();
+        assertTrue(config.hasPendingReload());
+
+        assertTrue(config.applyReload());
+        assertFalse(config.protectFromPistons());
+        assertEquals(version + 1, config.getSnapshot().getVersion());
+        assertEquals(1, config.getSnapshot().getRules().size());
+        assertEquals("minecraft:stone", config.getSnapshot().getPatterns().get(0));
+    }
+
+    @Test
+    public void testUnchanged() {
+        WhitelistSnapshot before = config.getSnapshot();
+        config.reloadFromDisk();
+        assertFalse(config.hasPendingReload());
+        assertFalse(config.applyReload());
+        assertTrue(config.preventInteract());
+        assertSame(before, config.getSnapshot());
+    }
+}
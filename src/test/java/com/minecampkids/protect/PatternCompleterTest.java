@@ -0,0 +1,96 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.init.Bootstrap;
+
+/**
+ * Completes against the vanilla registries.
+ */
+public class PatternCompleterTest {
+
+    @BeforeClass
+    public static void setup() {
+        Bootstrap.register();
+    }
+
+    private static List<String> complete(String input) {
+        return PatternCompleter.get().complete(input, Arrays.asList("bricks", "wood"));
+    }
+
+    @Test
+    public void testFullName() {
+        List<String> ret = complete("minecraft:ston");
+        assertTrue(ret.contains("minecraft:stone"));
+        assertTrue(ret.contains("minecraft:stonebrick"));
+        assertTrue(ret.contains("minecraft:stone_slab"));
+        assertTrue(ret.stream().allMatch(s -> s.startsWith("minecraft:ston")));
+    }
+
+    @Test
+    public void testDomain() {
+        assertTrue(complete("mine").contains("minecraft:*"));
+        assertEquals("minecraft:*", complete("minecraft:").get(0));
+        assertFalse(complete("minecraft:s").contains("minecraft:*"));
+    }
+
+    @Test
+    public void testPathWithoutDomain() {
+        assertTrue(complete("stonebr").contains("minecraft:stonebrick"));
+    }
+
+    @Test
+    public void testAnyDomain() {
+        List<String> ret = complete("*:stone_s");
+        assertTrue(ret.contains("*:stone_slab"));
+        assertTrue(ret.contains("*:stone_stairs"));
+        assertTrue(ret.stream().allMatch(s -> s.startsWith("*:stone_s")));
+        assertTrue(complete("*:").contains("*:*"));
+        assertTrue(complete("").contains("*:*"));
+    }
+
+    @Test
+    public void testPropertyNames() {
+        List<String> ret = complete("minecraft:log[");
+        assertTrue(ret.contains("minecraft:log[axis="));
+        assertTrue(ret.contains("minecraft:log[variant="));
+        assertEquals(Collections.singletonList("minecraft:log[axis=y,variant="), complete("minecraft:log[axis=y,"));
+    }
+
+    @Test
+    public void testPropertyValues() {
+        assertEquals(Collections.singletonList("minecraft:log[variant=oak"), complete("minecraft:log[variant=o"));
+        // The last property left closes the pattern
+        assertEquals(Collections.singletonList("minecraft:log[axis=y,variant=oak]"), complete("minecraft:log[axis=y,variant=o"));
+        assertTrue(complete("log[variant=b").contains("log[variant=birch"));
+    }
+
+    @Test
+    public void testUnknownBlockProperties() {
+        assertTrue(complete("minecraft:nothing[").isEmpty());
+    }
+
+    @Test
+    public void testTags() {
+        assertEquals(Arrays.asList("#ore:", "#tag:"), complete("#"));
+        assertEquals(Collections.singletonList("#tag:"), complete("#T"));
+        assertEquals(Collections.singletonList("#tag:bricks"), complete("#tag:b"));
+        assertEquals(Arrays.asList("#tag:bricks", "#tag:wood"), complete("#tag:"));
+    }
+
+    @Test
+    public void testEntities() {
+        assertTrue(complete("enti").contains(EntityPredicate.PREFIX));
+        assertTrue(complete("entity:item_f").contains("entity:minecraft:item_frame"));
+        assertTrue(complete("entity:minecraft:armor").contains("entity:minecraft:armor_stand"));
+    }
+}
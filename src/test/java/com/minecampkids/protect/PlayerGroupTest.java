@@ -0,0 +1,73 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class PlayerGroupTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID CAROL = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @Test
+    public void testParse() {
+        PlayerGroup group = PlayerGroup.parse("builders;false;" + BOB + "," + ALICE + ";minecraft:stone minecraft:glass");
+        assertEquals("builders", group.getName());
+        assertFalse(group.isBypass());
+        assertEquals(ImmutableSet.of(ALICE, BOB), group.getMembers());
+        assertEquals(ImmutableSet.of(ProtectionConfig.getPredicate("minecraft:stone"), ProtectionConfig.getPredicate("minecraft:glass")), group.getRules());
+        // Members and patterns are written sorted
+        assertEquals("builders;false;" + ALICE + "," + BOB + ";minecraft:glass minecraft:stone", group.toString());
+        assertEquals(group, PlayerGroup.parse(group.toString()));
+    }
+
+    @Test
+    public void testEmpty() {
+        PlayerGroup group = PlayerGroup.parse("staff;true;;");
+        assertTrue(group.isBypass());
+        assertTrue(group.getMembers().isEmpty());
+        assertTrue(group.getRules().isEmpty());
+        assertEquals("staff;true;;", group.toString());
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String s : new String[] { "staff;true;", "staff;true;not-a-uuid;", "staff;true;;a:b:c", "my staff;true;;" }) {
+            try {
+                PlayerGroup.parse(s);
+                throw new AssertionError("Parsed '" + s + "'");
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+
+    @Test
+    public void testRuleSetsKept() {
+        PlayerGroup builders = PlayerGroup.parse("builders;false;" + ALICE + ";minecraft:stone");
+        PlayerGroup staff = PlayerGroup.parse("staff;true;" + BOB + ";");
+        WhitelistSnapshot snapshot = new WhitelistSnapshot(0, ImmutableList.of(), ImmutableList.of(), ImmutableList.of(builders, staff), ImmutableList.of(), true);
+
+        // A join only moves the player
+        WhitelistSnapshot joined = snapshot.withGroups(ImmutableList.of(builders.withMembers(ImmutableSet.of(ALICE, CAROL)), staff));
+        assertSame(snapshot.getRuleSet(ALICE), joined.getRuleSet(ALICE));
+        assertSame(joined.getRuleSet(ALICE), joined.getRuleSet(CAROL));
+        assertSame(snapshot.getRuleSet(BOB), joined.getRuleSet(BOB));
+
+        // Only the group that changed gets a new rule set
+        WhitelistSnapshot edited = joined.withGroups(ImmutableList.of(builders.withRules(ImmutableSet.of(ProtectionConfig.getPredicate("minecraft:glass"))), staff.withBypass(true)));
+        assertNotSame(joined.getRuleSet(ALICE), edited.getRuleSet(ALICE));
+        assertSame(joined.getRuleSet(BOB), edited.getRuleSet(BOB));
+        WhitelistSnapshot unbypassed = edited.withGroups(ImmutableList.of(edited.getGroup(ALICE), staff.withBypass(false)));
+        assertSame(edited.getRuleSet(ALICE), unbypassed.getRuleSet(ALICE));
+        assertNotSame(edited.getRuleSet(BOB), unbypassed.getRuleSet(BOB));
+    }
+}
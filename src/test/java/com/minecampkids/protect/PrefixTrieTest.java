@@ -0,0 +1,75 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class PrefixTrieTest {
+
+    private static PrefixTrie create() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("minecraft:stone", "minecraft:stone");
+        trie.add("minecraft:stonebrick", "minecraft:stonebrick");
+        trie.add("minecraft:sand", "minecraft:sand");
+        trie.add("Chisel:Marble", "chisel:marble");
+        return trie.build();
+    }
+
+    @Test
+    public void testPrefix() {
+        PrefixTrie trie = create();
+        assertEquals(Arrays.asList("minecraft:stone", "minecraft:stonebrick"), trie.get("minecraft:st"));
+        assertEquals(Arrays.asList("minecraft:sand", "minecraft:stone", "minecraft:stonebrick"), trie.get("minecraft:s"));
+        assertEquals(Collections.singletonList("minecraft:stonebrick"), trie.get("minecraft:stoneb"));
+    }
+
+    @Test
+    public void testEmptyPrefixReturnsEverythingSorted() {
+        assertEquals(Arrays.asList("chisel:marble", "minecraft:sand", "minecraft:stone", "minecraft:stonebrick"), create().get(""));
+    }
+
+    @Test
+    public void testExactKeyIncludesLongerKeys() {
+        assertEquals(Arrays.asList("minecraft:stone", "minecraft:stonebrick"), create().get("minecraft:stone"));
+    }
+
+    @Test
+    public void testIgnoresCase() {
+        PrefixTrie trie = create();
+        assertEquals(Collections.singletonList("chisel:marble"), trie.get("chisel:mar"));
+        assertEquals(Collections.singletonList("chisel:marble"), trie.get("CHISEL:MAR"));
+        assertEquals(Arrays.asList("minecraft:stone", "minecraft:stonebrick"), trie.get("MineCraft:St"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        PrefixTrie trie = create();
+        assertTrue(trie.get("minecraft:x").isEmpty());
+        assertTrue(trie.get("minecraft:stonebricks").isEmpty());
+    }
+
+    @Test
+    public void testDuplicateValuesUnderSharedPrefix() {
+        // The completer indexes a block under both its full name and its path
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("minecraft:stone", "minecraft:stone");
+        trie.add("stone", "minecraft:stone");
+        trie.build();
+        assertEquals(Collections.singletonList("minecraft:stone"), trie.get("st"));
+        assertEquals(Arrays.asList("minecraft:stone", "minecraft:stone"), trie.get(""));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterBuild() {
+        create().add("minecraft:dirt", "minecraft:dirt");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testValuesAreFrozen() {
+        create().get("minecraft:").add("minecraft:dirt");
+    }
+}
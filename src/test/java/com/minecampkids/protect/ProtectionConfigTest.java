@@ -0,0 +1,130 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ProtectionConfigTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Test
+    public void testBlockPattern() {
+        BlockPredicate stone = ProtectionConfig.getPredicate("minecraft:stone");
+        assertEquals(BlockPredicate.class, stone.getClass());
+        assertEquals("minecraft", stone.getDomain());
+        assertEquals("stone", stone.getPath());
+        assertFalse(stone.isGlob());
+        assertEquals(stone, ProtectionConfig.getPredicate("stone"));
+    }
+
+    @Test
+    public void testWildcardPatterns() {
+        assertFalse(ProtectionConfig.getPredicate("*:*").isGlob());
+        assertFalse(ProtectionConfig.getPredicate("computercraft:*").isGlob());
+        assertTrue(ProtectionConfig.getPredicate("*:*stairs*").isGlob());
+        assertTrue(ProtectionConfig.getPredicate("chisel*:marble").isGlob());
+        assertEquals("*:*stairs*", ProtectionConfig.getPredicate("*:*stairs*").toString());
+    }
+
+    @Test
+    public void testStatePattern() {
+        BlockPredicate log = ProtectionConfig.getPredicate("minecraft:log[variant=oak,axis=y]");
+        assertTrue(log instanceof StatePredicate);
+        // Properties are written sorted, so the same state always reads back the same
+        assertEquals("minecraft:log[axis=y,variant=oak]", log.toString());
+        assertEquals(log, ProtectionConfig.getPredicate("minecraft:log[axis=y,variant=oak]"));
+        assertFalse(log.equals(ProtectionConfig.getPredicate("minecraft:log")));
+    }
+
+    @Test
+    public void testTagPatterns() {
+        BlockPredicate ore = ProtectionConfig.getPredicate("#ore:logWood");
+        assertTrue(ore instanceof TagPredicate);
+        assertTrue(((TagPredicate) ore).isOre());
+        assertEquals("logWood", ((TagPredicate) ore).getName());
+        assertEquals("#ore:logWood", ore.toString());
+
+        BlockPredicate tag = ProtectionConfig.getPredicate("#tag:wood");
+        assertTrue(tag instanceof TagPredicate);
+        assertFalse(((TagPredicate) tag).isOre());
+        assertEquals("wood", ((TagPredicate) tag).getName());
+    }
+
+    @Test
+    public void testEntityPattern() {
+        BlockPredicate frame = ProtectionConfig.getPredicate("entity:item_frame");
+        assertTrue(frame instanceof EntityPredicate);
+        assertEquals("entity:minecraft:item_frame", frame.toString());
+        assertEquals(frame, ProtectionConfig.getPredicate("entity:minecraft:item_frame"));
+        assertFalse(frame.equals(ProtectionConfig.getPredicate("minecraft:item_frame")));
+    }
+
+    @Test
+    public void testInvalidPatterns() {
+        for (String s : new String[] { "", "a:b:c", "minecraft:log[variant]", "minecraft:log[variant=oak", "#foo:bar", "#ore:", "stone slab" }) {
+            try {
+                ProtectionConfig.getPredicate(s);
+                throw new AssertionError("Parsed '" + s + "'");
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+
+    @Test
+    public void testLines() {
+        List<String> lines = Arrays.asList(
+                "enabled=false",
+                "whitelist=minecraft:stone",
+                "",
+                "whitelist=#tag:wood",
+                "region=spawn;0;-10,0,-10;10,255,10;allow",
+                "group=builders;false;" + ALICE + ";minecraft:glass",
+                "tag=wood;minecraft:log");
+        WhitelistSnapshot snapshot = ProtectionConfig.parseLines(lines);
+        assertEquals(0, snapshot.getVersion());
+        assertFalse(snapshot.isEnabled());
+        assertEquals(ImmutableSet.of(ProtectionConfig.getPredicate("minecraft:stone"), ProtectionConfig.getPredicate("#tag:wood")), snapshot.getRules());
+        assertEquals(ImmutableSet.of(Region.parse("spawn;0;-10,0,-10;10,255,10;allow")), snapshot.getRegions());
+        assertEquals(ImmutableSet.of("builders"), snapshot.getGroups().keySet());
+        assertEquals(ImmutableSet.of("wood"), snapshot.getTags().keySet());
+        // Tag patterns are bound to the tag's members
+        TagPredicate wood = (TagPredicate) snapshot.getRules().stream().filter(r -> r instanceof TagPredicate).findFirst().get();
+        assertEquals(ImmutableSet.of(ProtectionConfig.getPredicate("minecraft:log")), wood.getMembers());
+    }
+
+    @Test
+    public void testLinesRoundTrip() {
+        WhitelistSnapshot snapshot = ProtectionConfig.parseLines(Arrays.asList(
+                "whitelist=minecraft:stone",
+                "whitelist=*:*stairs*",
+                "whitelist=minecraft:log[variant=oak]",
+                "whitelist=entity:minecraft:item_frame",
+                "region=spawn;0;-10,0,-10;10,255,10;deny",
+                "group=staff;true;" + ALICE + ";",
+                "tag=wood;minecraft:log #ore:logWood"));
+        List<String> lines = snapshot.toLines();
+        assertEquals("enabled=true", lines.get(0));
+        WhitelistSnapshot read = ProtectionConfig.parseLines(lines);
+        assertEquals(lines, read.toLines());
+        assertEquals(snapshot.getContentHash(), read.getContentHash());
+        assertEquals(snapshot.getRules(), read.getRules());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLine() {
+        ProtectionConfig.parseLines(Arrays.asList("whitelist=minecraft:stone", "blacklist=minecraft:dirt"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPatternLine() {
+        ProtectionConfig.parseLines(Arrays.asList("whitelist=a:b:c"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.minecraft.util.math.BlockPos;
+
+public class RegionIndexTest {
+
+    private static Region region(String name, int dimension, int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Region(name, dimension, new BlockPos(x1, y1, z1), new BlockPos(x2, y2, z2), Region.Policy.DENY);
+    }
+
+    @Test
+    public void testEmpty() {
+        RegionIndex index = new RegionIndex(Collections.emptyList());
+        assertTrue(index.isEmpty());
+        assertNull(index.get(0, BlockPos.ORIGIN));
+    }
+
+    @Test
+    public void testContains() {
+        Region spawn = region("spawn", 0, -20, 0, -20, 20, 255, 20);
+        RegionIndex index = new RegionIndex(Collections.singleton(spawn));
+        assertFalse(index.isEmpty());
+        assertEquals(spawn, index.get(0, new BlockPos(-20, 64, 20)));
+        assertEquals(spawn, index.get(0, new BlockPos(20, 0, -20)));
+        assertNull(index.get(0, new BlockPos(21, 64, 0)));
+        assertNull(index.get(0, new BlockPos(-21, 64, 0)));
+        // Same chunk as the region, outside its box
+        assertNull(index.get(0, new BlockPos(-25, 64, 0)));
+    }
+
+    @Test
+    public void testDimension() {
+        Region nether = region("nether", -1, 0, 0, 0, 15, 255, 15);
+        RegionIndex index = new RegionIndex(Collections.singleton(nether));
+        assertEquals(nether, index.get(-1, new BlockPos(8, 64, 8)));
+        assertNull(index.get(0, new BlockPos(8, 64, 8)));
+    }
+
+    @Test
+    public void testSmallestWins() {
+        Region outer = region("outer", 0, -100, 0, -100, 100, 255, 100);
+        Region inner = region("inner", 0, -5, 60, -5, 5, 70, 5);
+        for (RegionIndex index : Arrays.asList(new RegionIndex(Arrays.asList(outer, inner)), new RegionIndex(Arrays.asList(inner, outer)))) {
+            assertEquals(inner, index.get(0, new BlockPos(0, 64, 0)));
+            assertEquals(outer, index.get(0, new BlockPos(0, 80, 0)));
+            assertEquals(outer, index.get(0, new BlockPos(50, 64, 50)));
+        }
+    }
+
+    @Test
+    public void testLargeRegion() {
+        // Far more chunks than are indexed one by one
+        Region world = region("world", 0, -10000, 0, -10000, 10000, 255, 10000);
+        Region island = region("island", 0, 100, 0, 100, 200, 255, 200);
+        RegionIndex index = new RegionIndex(Arrays.asList(world, island));
+        assertEquals(world, index.get(0, new BlockPos(-5000, 64, 5000)));
+        assertEquals(island, index.get(0, new BlockPos(150, 64, 150)));
+        assertNull(index.get(0, new BlockPos(10001, 64, 0)));
+        assertNull(index.get(1, new BlockPos(0, 64, 0)));
+    }
+
+    @Test
+    public void testLargeRegionSmallerThanIndexed() {
+        // A one block line, so smaller than the indexed region despite crossing more chunks
+        Region wall = region("wall", 0, -8800, 10, 5, 8800, 10, 5);
+        Region tower = region("tower", 0, 0, 0, 0, 31, 255, 31);
+        RegionIndex index = new RegionIndex(Arrays.asList(wall, tower));
+        assertEquals(wall, index.get(0, new BlockPos(5, 10, 5)));
+        assertEquals(tower, index.get(0, new BlockPos(5, 11, 5)));
+        assertEquals(wall, index.get(0, new BlockPos(5000, 10, 5)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RegionTest {
+
+    @Test
+    public void testParse() {
+        Region region = Region.parse("spawn;0;10,255,10;-10,0,-10;allow");
+        assertEquals("spawn", region.getName());
+        assertEquals(0, region.getDimension());
+        assertEquals(Region.Policy.ALLOW, region.getPolicy());
+        // Corners are stored as min and max
+        assertEquals("spawn;0;-10,0,-10;10,255,10;allow", region.toString());
+        assertEquals(region, Region.parse(region.toString()));
+        assertEquals(Region.Policy.DENY, Region.parse("pit;-1;0,0,0;1,1,1;DENY").getPolicy());
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String s : new String[] { "spawn;0;0,0,0;1,1,1;maybe", "spawn;0;0,0,0;1,1,1", "my spawn;0;0,0,0;1,1,1;allow", "spawn;0;0,0;1,1,1;allow" }) {
+            try {
+                Region.parse(s);
+                throw new AssertionError("Parsed '" + s + "'");
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+}
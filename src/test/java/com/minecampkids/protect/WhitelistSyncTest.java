@@ -0,0 +1,117 @@
+package com.minecampkids.protect;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+/**
+ * What the server sends when the whitelist changes, compared by encoding as the messages have no accessors.
+ */
+public class WhitelistSyncTest {
+
+    private static final WhitelistSnapshot BASE = ProtectionConfig.parseLines(Arrays.asList(
+            "whitelist=minecraft:stone",
+            "whitelist=minecraft:dirt",
+            "whitelist=*:*stairs*",
+            "region=spawn;0;-10,0,-10;10,255,10;allow",
+            "group=builders;false;00000000-0000-0000-0000-000000000001;minecraft:glass",
+            "tag=wood;minecraft:log"));
+
+    private static byte[] encode(IMessage message) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            message.toBytes(buf);
+            byte[] ret = new byte[buf.readableBytes()];
+            buf.readBytes(ret);
+            return ret;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void assertDelta(WhitelistSnapshot last, WhitelistSnapshot current, List<String> added, List<String> removed) {
+        IMessage update = WhitelistSync.createUpdate(last, current);
+        assertTrue(update instanceof MessageWhitelist);
+        assertArrayEquals(encode(new MessageWhitelist(last.getVersion(), current.getVersion(), current.isEnabled(), added, removed)), encode(update));
+    }
+
+    private static void assertFull(WhitelistSnapshot last, WhitelistSnapshot current) {
+        IMessage update = WhitelistSync.createUpdate(last, current);
+        assertTrue(update instanceof MessageInitialWhitelist);
+        assertArrayEquals(encode(new MessageInitialWhitelist(current.getVersion(), current.getContentHash(), current.isEnabled(),
+                current.getPatterns(), current.getRegionStrings(), current.getGroupStrings(), current.getTagStrings())), encode(update));
+    }
+
+    private static List<BlockPredicate> predicates(String... patterns) {
+        List<BlockPredicate> ret = new ArrayList<>();
+        for (String s : patterns) {
+            ret.add(ProtectionConfig.getPredicate(s));
+        }
+        return ret;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        MessageWhitelist message = new MessageWhitelist(41, 42, false, Arrays.asList("minecraft:stone", "*:*stairs*", "minecraft:log[axis=y,variant=oak]", "\u00e9t\u00e9:\u00e9t\u00e9"),
+                Collections.singletonList("#tag:wood"));
+        byte[] encoded = encode(message);
+        MessageWhitelist read = new MessageWhitelist();
+        read.fromBytes(Unpooled.wrappedBuffer(encoded));
+        assertArrayEquals(encoded, encode(read));
+    }
+
+    @Test
+    public void testRoundTripEmpty() {
+        byte[] encoded = encode(new MessageWhitelist(0, 1, true, Collections.emptyList(), Collections.emptyList()));
+        MessageWhitelist read = new MessageWhitelist();
+        read.fromBytes(Unpooled.wrappedBuffer(encoded));
+        assertArrayEquals(encoded, encode(read));
+    }
+
+    @Test
+    public void testAdded() {
+        WhitelistSnapshot current = BASE.withRules(predicates("minecraft:stone", "minecraft:dirt", "*:*stairs*", "minecraft:glass"));
+        assertDelta(BASE, current, Collections.singletonList("minecraft:glass"), Collections.emptyList());
+    }
+
+    @Test
+    public void testRemoved() {
+        WhitelistSnapshot current = BASE.withRules(predicates("minecraft:stone", "*:*stairs*"));
+        assertDelta(BASE, current, Collections.emptyList(), Collections.singletonList("minecraft:dirt"));
+    }
+
+    @Test
+    public void testEnabledOnly() {
+        assertDelta(BASE, BASE.withEnabled(false), Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void testSkippedVersions() {
+        WhitelistSnapshot current = BASE.withRules(predicates("minecraft:stone", "minecraft:dirt", "*:*stairs*", "minecraft:glass")).withEnabled(false);
+        assertDelta(BASE, current, Collections.singletonList("minecraft:glass"), Collections.emptyList());
+    }
+
+    @Test
+    public void testLargeChangeSendsSnapshot() {
+        // Four changes against a list of one
+        assertFull(BASE, BASE.withRules(predicates("minecraft:sand")));
+        assertFull(BASE, BASE.withRules(Collections.emptySet()));
+    }
+
+    @Test
+    public void testOtherChangesSendSnapshot() {
+        assertFull(BASE, BASE.withRegions(Collections.emptySet()));
+        assertFull(BASE, BASE.withGroups(Collections.emptySet()));
+        assertFull(BASE, BASE.withTags(Collections.singleton(BlockTag.parse("wood;minecraft:log minecraft:log2"))));
+    }
+}